@@ -0,0 +1,83 @@
+package dod.bench;
+
+import java.util.LinkedHashMap;
+
+/**
+ * A single operation to be timed by a BenchmarkRunner.
+ * The operation is run over and over again, anything it returns is kept by the runner so the work can't be optimised away.
+ * Set up and tear down are run once, outside the timed part.
+ * @author Benjamin Dring
+ */
+public abstract class Benchmark {
+	private final String name;
+	private final LinkedHashMap<String, String> params; //Describe what this run of the benchmark measures, in the order given
+
+	/**
+	 * @param name String the name of the benchmark, runs of the same benchmark share this and differ by their parameters
+	 */
+	public Benchmark(String name)
+	{
+		this.name = name;
+		this.params = new LinkedHashMap<String, String>();
+	}
+
+	/**
+	 * Adds a parameter to the benchmark's description
+	 * @param key String the name of the parameter
+	 * @param value Object the value of the parameter
+	 * @return Benchmark this benchmark, so parameters can be chained
+	 */
+	public Benchmark param(String key, Object value)
+	{
+		params.put(key, String.valueOf(value));
+		return this;
+	}
+
+	/**
+	 * Prepares the benchmark, by default nothing is done
+	 * @throws Exception
+	 */
+	public void setUp() throws Exception {}
+
+	/**
+	 * Runs the operation being measured once
+	 * @return Object the result of the operation
+	 * @throws Exception
+	 */
+	public abstract Object operation() throws Exception;
+
+	/**
+	 * Cleans up after the benchmark, by default nothing is done
+	 * @throws Exception
+	 */
+	public void tearDown() throws Exception {}
+
+	/**
+	 * @return String the name of the benchmark
+	 */
+	public String getName()
+	{
+		return this.name;
+	}
+
+	/**
+	 * @return LinkedHashMap<String, String> the parameters of the benchmark
+	 */
+	public LinkedHashMap<String, String> getParams()
+	{
+		return this.params;
+	}
+
+	/**
+	 * @return String the name followed by the parameters, as printed in the results
+	 */
+	public String getLabel()
+	{
+		StringBuilder label = new StringBuilder(name);
+		for (String key : params.keySet())
+		{
+			label.append(' ').append(key).append('=').append(params.get(key));
+		}
+		return label.toString();
+	}
+}
@@ -0,0 +1,236 @@
+package dod.bench;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Times benchmarks and writes their results as JSON.
+ * Each benchmark is warmed up so the JIT has compiled it and then timed over several iterations of a fixed length,
+ * the score is the mean number of operations per second over the timed iterations.
+ * The JSON is laid out the same way as JMH's so the results can be read by the same tools.
+ * @author Benjamin Dring
+ */
+public class BenchmarkRunner {
+	//Used for the error of a score, it is the 99.9% confidence interval of a normal distribution
+	private static final double CONFIDENCE_Z = 3.291;
+
+	private final int warmupIterations;
+	private final int measurementIterations;
+	private final long iterationNanos; //The length of each iteration
+
+	private volatile Object sink; //Results of the operations are stored here so they are never thrown away unused
+
+	/**
+	 * @param warmupIterations int the number of iterations run before timing starts
+	 * @param measurementIterations int the number of iterations timed
+	 * @param iterationMillis long the length of each iteration in milliseconds
+	 */
+	public BenchmarkRunner(int warmupIterations, int measurementIterations, long iterationMillis)
+	{
+		this.warmupIterations = warmupIterations;
+		this.measurementIterations = Math.max(1, measurementIterations);
+		this.iterationNanos = iterationMillis * 1000000L;
+	}
+
+	/**
+	 * Sets up, times and tears down a benchmark
+	 * @param benchmark Benchmark the benchmark
+	 * @return Result the scores of the benchmark
+	 * @throws Exception if the benchmark fails
+	 */
+	public Result run(Benchmark benchmark) throws Exception
+	{
+		double[] scores = new double[measurementIterations];
+		benchmark.setUp();
+		try
+		{
+			for (int iteration = 0; iteration < warmupIterations; iteration++)
+			{
+				runIteration(benchmark);
+			}
+			for (int iteration = 0; iteration < measurementIterations; iteration++)
+			{
+				scores[iteration] = runIteration(benchmark);
+			}
+		}
+		finally
+		{
+			benchmark.tearDown();
+		}
+		return new Result(benchmark, scores);
+	}
+
+	/**
+	 * Runs the operation until the iteration has lasted long enough
+	 * @param benchmark Benchmark the benchmark
+	 * @return double the operations per second
+	 * @throws Exception if the benchmark fails
+	 */
+	private double runIteration(Benchmark benchmark) throws Exception
+	{
+		long operations = 0;
+		final long startTime = System.nanoTime();
+		final long endTime = startTime + iterationNanos;
+		long now;
+		do
+		{
+			sink = benchmark.operation();
+			operations++;
+			now = System.nanoTime();
+		}
+		while (now < endTime);
+		return operations * 1e9 / (now - startTime);
+	}
+
+	/**
+	 * Writes results as a JSON array
+	 * @param results List<Result> the results
+	 * @param filename String the file to write to
+	 * @throws IOException
+	 */
+	public void writeJson(List<Result> results, String filename) throws IOException
+	{
+		PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(filename), Charset.forName("UTF-8")));
+		try
+		{
+			out.println("[");
+			for (int index = 0; index < results.size(); index++)
+			{
+				results.get(index).writeJson(out, warmupIterations, measurementIterations, iterationNanos / 1000000L);
+				out.println((index + 1 < results.size()) ? "," : "");
+			}
+			out.println("]");
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	/**
+	 * The scores of a single benchmark
+	 */
+	public static class Result {
+		private final Benchmark benchmark;
+		private final double[] scores; //Operations per second of each timed iteration
+
+		/**
+		 * @param benchmark Benchmark the benchmark that was run
+		 * @param scores double[] the operations per second of each timed iteration
+		 */
+		public Result(Benchmark benchmark, double[] scores)
+		{
+			this.benchmark = benchmark;
+			this.scores = scores;
+		}
+
+		/**
+		 * @return double the mean operations per second
+		 */
+		public double getScore()
+		{
+			double total = 0;
+			for (double score : scores)
+			{
+				total += score;
+			}
+			return total / scores.length;
+		}
+
+		/**
+		 * @return double half the width of the 99.9% confidence interval of the score, 0 if there is only one iteration
+		 */
+		public double getScoreError()
+		{
+			if (scores.length < 2)
+			{
+				return 0;
+			}
+			final double mean = getScore();
+			double squares = 0;
+			for (double score : scores)
+			{
+				squares += (score - mean) * (score - mean);
+			}
+			double deviation = Math.sqrt(squares / (scores.length - 1));
+			return CONFIDENCE_Z * deviation / Math.sqrt(scores.length);
+		}
+
+		/**
+		 * @return Benchmark the benchmark that was run
+		 */
+		public Benchmark getBenchmark()
+		{
+			return this.benchmark;
+		}
+
+		/**
+		 * Writes the result as a JSON object
+		 * @param out PrintWriter where to write
+		 * @param warmupIterations int the number of warm up iterations run
+		 * @param measurementIterations int the number of iterations timed
+		 * @param iterationMillis long the length of each iteration
+		 */
+		private void writeJson(PrintWriter out, int warmupIterations, int measurementIterations, long iterationMillis)
+		{
+			out.println("  {");
+			out.println("    \"benchmark\" : " + quote("dod.bench." + benchmark.getName()) + ",");
+			out.println("    \"mode\" : \"thrpt\",");
+			out.println("    \"threads\" : 1,");
+			out.println("    \"warmupIterations\" : " + warmupIterations + ",");
+			out.println("    \"warmupTime\" : \"" + iterationMillis + " ms\",");
+			out.println("    \"measurementIterations\" : " + measurementIterations + ",");
+			out.println("    \"measurementTime\" : \"" + iterationMillis + " ms\",");
+			out.print("    \"params\" : {");
+			boolean first = true;
+			for (String key : benchmark.getParams().keySet())
+			{
+				out.print((first ? "" : ", ") + quote(key) + " : " + quote(benchmark.getParams().get(key)));
+				first = false;
+			}
+			out.println("},");
+			out.println("    \"primaryMetric\" : {");
+			out.println("      \"score\" : " + getScore() + ",");
+			out.println("      \"scoreError\" : " + getScoreError() + ",");
+			out.println("      \"scoreUnit\" : \"ops/s\",");
+			out.print("      \"rawData\" : [ [");
+			for (int index = 0; index < scores.length; index++)
+			{
+				out.print(((index == 0) ? " " : ", ") + scores[index]);
+			}
+			out.println(" ] ]");
+			out.println("    }");
+			out.print("  }");
+		}
+
+		/**
+		 * @param text String the text to be put in JSON
+		 * @return String the text as a JSON string
+		 */
+		private static String quote(String text)
+		{
+			StringBuilder quoted = new StringBuilder("\"");
+			for (int index = 0; index < text.length(); index++)
+			{
+				char character = text.charAt(index);
+				if ((character == '"') || (character == '\\'))
+				{
+					quoted.append('\\').append(character);
+				}
+				else if (character < ' ')
+				{
+					quoted.append(String.format("\\u%04x", (int) character));
+				}
+				else
+				{
+					quoted.append(character);
+				}
+			}
+			return quoted.append('"').toString();
+		}
+	}
+}
@@ -0,0 +1,433 @@
+package dod.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import dod.Communicator.LocalGameCommunicator;
+import dod.GUI.ClientListener;
+import dod.game.GameLogic;
+import dod.game.Location;
+import dod.game.Map;
+
+/**
+ * Benchmarks of the hot paths of the game engine: looks, moves and attacks, command parsing, map loading and bot path finding.
+ * Games are run with their commands on the benchmark's own thread so only the engine's work is timed.
+ * Every benchmark is run in turn and the results are printed and written as JSON so they can be compared between versions.
+ * @author Benjamin Dring
+ */
+public class EngineBenchmarks {
+	private static final long SEED = 42;
+	//The message shouted by the SHOUT benchmark, it has the characters sanitising has to deal with
+	private static final String SHOUT_MESSAGE = "Anyone seen the exit? I've got 3 gold & a sword; trade? <ok>";
+
+	//Runs the game's commands on the thread that gave them
+	private static final Executor DIRECT_EXECUTOR = new Executor(){
+		@Override
+		public void execute(Runnable command)
+		{
+			command.run();
+		}
+	};
+
+	private final String mapsDirectory; //Where the shipped maps are found
+	private final File generatedDirectory; //Where generated maps are written
+	private final String generatedMap; //A generated map with room to move around, used by the game benchmarks
+
+	/**
+	 * @param mapsDirectory String the directory holding the shipped maps
+	 * @throws IOException if the generated maps can't be written
+	 * @throws ParseException
+	 */
+	public EngineBenchmarks(String mapsDirectory) throws IOException, ParseException
+	{
+		this.mapsDirectory = mapsDirectory;
+		this.generatedDirectory = File.createTempFile("dod-bench", "");
+		generatedDirectory.delete();
+		generatedDirectory.mkdir();
+		generatedDirectory.deleteOnExit();
+		this.generatedMap = writeGeneratedMap(64, false);
+	}
+
+	/**
+	 * Creates every benchmark
+	 * @return List<Benchmark> the benchmarks in the order they are run
+	 * @throws IOException if the generated maps can't be written
+	 * @throws ParseException
+	 */
+	public List<Benchmark> createBenchmarks() throws IOException, ParseException
+	{
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		benchmarks.add(lookBenchmark(false).param("lookDistance", 2));
+		benchmarks.add(lookBenchmark(true).param("lookDistance", 3));
+		benchmarks.add(moveBenchmark());
+		benchmarks.add(attackBenchmark());
+		benchmarks.add(commandBenchmark("SHOUT " + SHOUT_MESSAGE).param("command", "SHOUT"));
+		benchmarks.add(commandBenchmark("HELLO Benchmark").param("command", "HELLO"));
+		benchmarks.add(commandBenchmark("DANCE").param("command", "invalid"));
+		for (String mapName : new String[] {"defaultMap", "sMap", "vsMap"})
+		{
+			benchmarks.add(mapLoadBenchmark(new File(mapsDirectory, mapName).getPath()).param("map", mapName));
+		}
+		for (int size : new int[] {256, 1024})
+		{
+			benchmarks.add(mapLoadBenchmark(writeGeneratedMap(size, false)).param("map", "generated").param("size", size)
+					.param("format", "text"));
+			benchmarks.add(mapLoadBenchmark(writeGeneratedMap(size, true)).param("map", "generated").param("size", size)
+					.param("format", "binary"));
+		}
+		for (int size : new int[] {5, 15, 31})
+		{
+			benchmarks.add(pathFindBenchmark(size).param("gridSize", size));
+		}
+		return benchmarks;
+	}
+
+	/**
+	 * Times GameLogic.clientLook for a single player
+	 * @param withLantern boolean true if the player picks up the lantern first, so they can see further
+	 * @return Benchmark the benchmark
+	 */
+	private Benchmark lookBenchmark(final boolean withLantern)
+	{
+		return new Benchmark("GameLogic.clientLook"){
+			private GameLogic game;
+
+			@Override
+			public void setUp() throws Exception
+			{
+				game = createGame();
+				LocalGameCommunicator comm = join(game, new LastMessageListener());
+				game.startGame();
+				if (withLantern)
+				{
+					comm.sendMessageToGame("SETPLAYERPOS " + GeneratedMaps.LANTERN_COL + " " + GeneratedMaps.ITEM_ROW);
+					comm.sendMessageToGame("PICKUP");
+				}
+				comm.sendMessageToGame("SETPLAYERPOS 10 10");
+			}
+
+			@Override
+			public Object operation()
+			{
+				return game.clientLook(0);
+			}
+		};
+	}
+
+	/**
+	 * Times a MOVE command from a user, including the look that is sent back
+	 * @return Benchmark the benchmark
+	 */
+	private Benchmark moveBenchmark()
+	{
+		return new Benchmark("User.move"){
+			private LocalGameCommunicator comm;
+			private LastMessageListener listener;
+			private boolean east; //The player moves back and forth
+
+			@Override
+			public void setUp() throws Exception
+			{
+				GameLogic game = createGame();
+				listener = new LastMessageListener();
+				comm = join(game, listener);
+				game.startGame();
+				comm.sendMessageToGame("SETPLAYERPOS 10 10");
+			}
+
+			@Override
+			public Object operation()
+			{
+				east = !east;
+				comm.sendMessageToGame(east ? "MOVE E" : "MOVE W");
+				return listener.lastMessage;
+			}
+		};
+	}
+
+	/**
+	 * Times an ATTACK command and the turn passing back to the attacker.
+	 * The victim wears armour so the attack does no damage and can be repeated for ever.
+	 * @return Benchmark the benchmark
+	 */
+	private Benchmark attackBenchmark()
+	{
+		return new Benchmark("User.attack"){
+			private LocalGameCommunicator attacker;
+			private LocalGameCommunicator victim;
+			private LastMessageListener listener;
+
+			@Override
+			public void setUp() throws Exception
+			{
+				GameLogic game = createGame();
+				listener = new LastMessageListener();
+				attacker = join(game, listener);
+				victim = join(game, new LastMessageListener());
+				game.startGame();
+				attacker.sendMessageToGame("SETPLAYERPOS 10 10");
+				attacker.sendMessageToGame("ENDTURN");
+				victim.sendMessageToGame("SETPLAYERPOS " + GeneratedMaps.ARMOUR_COL + " " + GeneratedMaps.ITEM_ROW);
+				victim.sendMessageToGame("PICKUP");
+				victim.sendMessageToGame("SETPLAYERPOS 11 10");
+				victim.sendMessageToGame("ENDTURN");
+			}
+
+			@Override
+			public Object operation()
+			{
+				//An attack uses up the attacker's turn so the victim gives it straight back
+				attacker.sendMessageToGame("ATTACK E");
+				victim.sendMessageToGame("ENDTURN");
+				return listener.lastMessage;
+			}
+		};
+	}
+
+	/**
+	 * Times a command that doesn't change the map being parsed and carried out by a user
+	 * @param command String the command
+	 * @return Benchmark the benchmark
+	 */
+	private Benchmark commandBenchmark(final String command)
+	{
+		return new Benchmark("User.processCommand"){
+			private LocalGameCommunicator comm;
+			private LastMessageListener listener;
+
+			@Override
+			public void setUp() throws Exception
+			{
+				GameLogic game = createGame();
+				listener = new LastMessageListener();
+				comm = join(game, listener);
+				game.startGame();
+			}
+
+			@Override
+			public Object operation()
+			{
+				comm.sendMessageToGame(command);
+				return listener.lastMessage;
+			}
+		};
+	}
+
+	/**
+	 * Times loading a map file
+	 * @param mapFile String the map file
+	 * @return Benchmark the benchmark
+	 */
+	private Benchmark mapLoadBenchmark(final String mapFile)
+	{
+		return new Benchmark("Map.load"){
+			@Override
+			public Object operation() throws Exception
+			{
+				return new Map(mapFile);
+			}
+		};
+	}
+
+	/**
+	 * Times a bot finding a path from the centre of a look grid to its far corner
+	 * @param size int the length of a side of the grid
+	 * @return Benchmark the benchmark
+	 */
+	private Benchmark pathFindBenchmark(final int size)
+	{
+		return new Benchmark("PathFindingBot.pathFindTo"){
+			private GridPathFinder pathFinder;
+			private final Location destination = new Location(0, 0);
+
+			@Override
+			public void setUp()
+			{
+				pathFinder = new GridPathFinder(GeneratedMaps.lookGrid(size, 20, SEED));
+			}
+
+			@Override
+			public Object operation()
+			{
+				return pathFinder.findPath(destination);
+			}
+		};
+	}
+
+	/**
+	 * @return GameLogic a game on the generated map whose commands are run straight away
+	 * @throws Exception
+	 */
+	private GameLogic createGame() throws Exception
+	{
+		return new GameLogic(generatedMap, null, DIRECT_EXECUTOR, SEED);
+	}
+
+	/**
+	 * Adds a local user to a game
+	 * @param game GameLogic the game
+	 * @param listener ClientListener the listener given the user's messages
+	 * @return LocalGameCommunicator the communicator of the new user
+	 */
+	private static LocalGameCommunicator join(GameLogic game, ClientListener listener)
+	{
+		LocalGameCommunicator comm = new LocalGameCommunicator(game);
+		comm.addListener(listener);
+		comm.sendMessageToGame("HELLO Benchmark");
+		return comm;
+	}
+
+	/**
+	 * Writes a generated square map
+	 * @param size int the length of a side
+	 * @param binary boolean true to write the binary map format
+	 * @return String the name of the map file
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	private String writeGeneratedMap(int size, boolean binary) throws IOException, ParseException
+	{
+		File textFile = new File(generatedDirectory, "generated" + size);
+		if (!textFile.exists())
+		{
+			GeneratedMaps.writeMap(textFile, size, size, SEED);
+			textFile.deleteOnExit();
+		}
+		if (!binary)
+		{
+			return textFile.getPath();
+		}
+		File binaryFile = new File(generatedDirectory, "generated" + size + ".dodm");
+		new Map(textFile.getPath()).saveBinary(binaryFile.getPath());
+		binaryFile.deleteOnExit();
+		return binaryFile.getPath();
+	}
+
+	/**
+	 * Runs the benchmarks from the command line
+	 * @param args String[] the options followed by words that the benchmarks to be run must contain, every benchmark is run if none are given
+	 */
+	public static void main(String[] args)
+	{
+		String outFile = "bench-results.json";
+		String mapsDirectory = "bin";
+		int warmupIterations = 3;
+		int measurementIterations = 5;
+		long iterationMillis = 1000;
+		List<String> filters = new ArrayList<String>();
+		try
+		{
+			for (int index = 0; index < args.length; index++)
+			{
+				String arg = args[index];
+				if ((arg.startsWith("--")) && (index + 1 >= args.length))
+				{
+					printUsage();
+					return;
+				}
+				if (arg.equals("--out"))
+				{
+					outFile = args[++index];
+				}
+				else if (arg.equals("--maps"))
+				{
+					mapsDirectory = args[++index];
+				}
+				else if (arg.equals("--warmup"))
+				{
+					warmupIterations = Integer.parseInt(args[++index]);
+				}
+				else if (arg.equals("--iterations"))
+				{
+					measurementIterations = Integer.parseInt(args[++index]);
+				}
+				else if (arg.equals("--time"))
+				{
+					iterationMillis = Long.parseLong(args[++index]);
+				}
+				else
+				{
+					filters.add(arg);
+				}
+			}
+		}
+		catch (NumberFormatException e)
+		{
+			printUsage();
+			return;
+		}
+
+		BenchmarkRunner runner = new BenchmarkRunner(warmupIterations, measurementIterations, iterationMillis);
+		List<BenchmarkRunner.Result> results = new ArrayList<BenchmarkRunner.Result>();
+		try
+		{
+			for (Benchmark benchmark : new EngineBenchmarks(mapsDirectory).createBenchmarks())
+			{
+				if (!matches(benchmark.getLabel(), filters))
+				{
+					continue;
+				}
+				BenchmarkRunner.Result result = runner.run(benchmark);
+				results.add(result);
+				System.out.println(String.format("%-70s %14.1f +- %10.1f ops/s", benchmark.getLabel(),
+						result.getScore(), result.getScoreError()));
+			}
+			runner.writeJson(results, outFile);
+			System.out.println("Results written to " + outFile);
+		}
+		catch (Exception e)
+		{
+			System.out.println("Benchmark failed: " + e);
+		}
+	}
+
+	/**
+	 * @param label String the label of a benchmark
+	 * @param filters List<String> the words given on the command line
+	 * @return boolean true if the benchmark should be run
+	 */
+	private static boolean matches(String label, List<String> filters)
+	{
+		if (filters.isEmpty())
+		{
+			return true;
+		}
+		for (String filter : filters)
+		{
+			if (label.contains(filter))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Prints how the benchmarks are run
+	 */
+	private static void printUsage()
+	{
+		System.out.println("Usage: java dod.bench.EngineBenchmarks [--out <json file>] [--maps <directory>] "
+				+ "[--warmup <n>] [--iterations <n>] [--time <ms>] [<filter> ...]");
+	}
+
+	/**
+	 * Keeps the last message sent to a user so the work of sending it can't be optimised away
+	 */
+	private static class LastMessageListener implements ClientListener {
+		private String lastMessage;
+
+		@Override
+		public void pushMessage(String message)
+		{
+			lastMessage = message;
+		}
+
+		@Override
+		public void restartGame() {}
+	}
+}
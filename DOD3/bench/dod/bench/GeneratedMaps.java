@@ -0,0 +1,164 @@
+package dod.bench;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.SplittableRandom;
+
+/**
+ * Generates maps and look grids of any size for the benchmarks, the same seed always gives the same map.
+ * @author Benjamin Dring
+ */
+public class GeneratedMaps {
+	//Tiles that are always placed near the top left corner of a generated map so benchmarks can find them
+	public static final int LANTERN_COL = 2;
+	public static final int ARMOUR_COL = 4;
+	public static final int GOLD_COL = 6;
+	public static final int EXIT_COL = 8;
+	public static final int ITEM_ROW = 2;
+	//The top left corner of the map up to this row and column is left clear of walls and random items
+	public static final int CLEAR_SIZE = 16;
+
+	/**
+	 * Writes a map file surrounded by walls with walls and gold scattered across it
+	 * @param file File the file to write
+	 * @param width int the width of the map, at least CLEAR_SIZE + 2
+	 * @param height int the height of the map, at least CLEAR_SIZE + 2
+	 * @param seed long where the walls and gold are placed
+	 * @throws FileNotFoundException
+	 */
+	public static void writeMap(File file, int width, int height, long seed) throws FileNotFoundException
+	{
+		SplittableRandom random = new SplittableRandom(seed);
+		PrintWriter out = new PrintWriter(file);
+		try
+		{
+			out.println("name Generated " + width + "x" + height);
+			out.println("win 1");
+			char[] row = new char[width];
+			for (int rowNumber = 0; rowNumber < height; rowNumber++)
+			{
+				for (int col = 0; col < width; col++)
+				{
+					row[col] = pickTile(random, col, rowNumber, width, height);
+				}
+				out.println(row);
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	/**
+	 * Picks the tile at a position of a generated map
+	 * @param random SplittableRandom the source of the random tiles
+	 * @param col int the column of the tile
+	 * @param row int the row of the tile
+	 * @param width int the width of the map
+	 * @param height int the height of the map
+	 * @return char the tile
+	 */
+	private static char pickTile(SplittableRandom random, int col, int row, int width, int height)
+	{
+		if ((col == 0) || (row == 0) || (col == width - 1) || (row == height - 1))
+		{
+			return '#';
+		}
+		if (row == ITEM_ROW)
+		{
+			switch (col)
+			{
+				case LANTERN_COL:
+					return 'L';
+				case ARMOUR_COL:
+					return 'A';
+				case GOLD_COL:
+					return 'G';
+				case EXIT_COL:
+					return 'E';
+			}
+		}
+		if ((col <= CLEAR_SIZE) && (row <= CLEAR_SIZE))
+		{
+			return '.';
+		}
+		int roll = random.nextInt(100);
+		if (roll < 15)
+		{
+			return '#';
+		}
+		return (roll < 17) ? 'G' : '.';
+	}
+
+	/**
+	 * Generates a square look grid with walls scattered across it, as a bot would see it.
+	 * The centre, where the player is, and the top left corner are floor and there is always a path between them.
+	 * @param size int the length of a side, it should be odd so the player is in the centre
+	 * @param wallPercent int the chance of each tile being a wall
+	 * @param seed long where the walls are placed
+	 * @return char[][] the grid, indexed by row then column
+	 */
+	public static char[][] lookGrid(int size, int wallPercent, long seed)
+	{
+		SplittableRandom random = new SplittableRandom(seed);
+		while (true)
+		{
+			char[][] grid = new char[size][size];
+			for (int row = 0; row < size; row++)
+			{
+				for (int col = 0; col < size; col++)
+				{
+					grid[row][col] = (random.nextInt(100) < wallPercent) ? '#' : '.';
+				}
+			}
+			grid[0][0] = '.';
+			grid[size / 2][size / 2] = '.';
+			if (isConnected(grid, size / 2, size / 2, 0, 0))
+			{
+				return grid;
+			}
+		}
+	}
+
+	/**
+	 * Checks if there is a path of floor tiles between two positions of a grid
+	 * @param grid char[][] the grid
+	 * @param startCol int the column to start from
+	 * @param startRow int the row to start from
+	 * @param endCol int the column to reach
+	 * @param endRow int the row to reach
+	 * @return boolean true if there is a path
+	 */
+	private static boolean isConnected(char[][] grid, int startCol, int startRow, int endCol, int endRow)
+	{
+		int size = grid.length;
+		boolean[] visited = new boolean[size * size];
+		ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+		queue.add((startRow * size) + startCol);
+		visited[(startRow * size) + startCol] = true;
+		while (!queue.isEmpty())
+		{
+			int index = queue.poll();
+			int col = index % size;
+			int row = index / size;
+			if ((col == endCol) && (row == endRow))
+			{
+				return true;
+			}
+			int[][] neighbours = {{col, row - 1}, {col, row + 1}, {col + 1, row}, {col - 1, row}};
+			for (int[] neighbour : neighbours)
+			{
+				if ((neighbour[0] >= 0) && (neighbour[1] >= 0) && (neighbour[0] < size) && (neighbour[1] < size)
+						&& (grid[neighbour[1]][neighbour[0]] == '.') && (!visited[(neighbour[1] * size) + neighbour[0]]))
+				{
+					visited[(neighbour[1] * size) + neighbour[0]] = true;
+					queue.add((neighbour[1] * size) + neighbour[0]);
+				}
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,47 @@
+package dod.bench;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+import dod.BotLogic.PathFindingBot;
+import dod.game.CompassDirection;
+import dod.game.Location;
+
+/**
+ * A path finding bot that never plays, it is given a fixed look grid so its path finding can be timed on its own.
+ * @author Benjamin Dring
+ */
+public class GridPathFinder extends PathFindingBot {
+
+	/**
+	 * @param grid char[][] the look grid, indexed by row then column, the player is in the centre
+	 */
+	public GridPathFinder(char[][] grid)
+	{
+		super(null, new SplittableRandom(0));
+		//The grid is given as a look reply would be, with its header and trailer
+		String[] lookReply = new String[grid.length + 2];
+		lookReply[0] = "LOOKREPLY";
+		for (int row = 0; row < grid.length; row++)
+		{
+			lookReply[row + 1] = new String(grid[row]);
+		}
+		lookReply[grid.length + 1] = "ENDLOOKREPLY";
+		giveLookReply(lookReply);
+	}
+
+	/**
+	 * @param destination Location the tile on the grid to find a path to
+	 * @return ArrayList<CompassDirection> the path from the player, null if there isn't one
+	 */
+	public ArrayList<CompassDirection> findPath(Location destination)
+	{
+		return pathFindTo(destination);
+	}
+
+	@Override
+	protected String getAction()
+	{
+		return null;
+	}
+}
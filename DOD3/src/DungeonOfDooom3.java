@@ -1,6 +1,7 @@
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 
+import dod.ExecutionMode;
 import dod.GUI.MainMenu;
 /**
  * The Main Class to be run to play Dungeon Of Dooom 3
@@ -10,9 +11,16 @@ public class DungeonOfDooom3 {
 	
 	/**
 	 * The main class that is run when the program is run
-	 * @param args String[] These are ignored
+	 * @param args String[] "--virtual-threads" runs connections and bots on virtual threads, anything else is ignored
 	 */
 	public static void main(String[] args) {
+		for (String arg : args)
+		{
+			if (arg.equals("--virtual-threads"))
+			{
+				ExecutionMode.setDefault(ExecutionMode.VIRTUAL);
+			}
+		}
 		try
 		{
 			//Set up selections menus
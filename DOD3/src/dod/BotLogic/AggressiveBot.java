@@ -1,7 +1,7 @@
 package dod.BotLogic;
 
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 import dod.Communicator.GameCommunicator;
 import dod.game.CompassDirection;
@@ -25,6 +25,17 @@ public class AggressiveBot extends PlayerFindingBot {
 		this.hasSword = false;
 	}
 	
+	/**
+	 * The constructor for the aggressive bot it sets up it's decision making processes and 
+	 * Prepares communication with the game
+	 * @param comm GameComunicator The communicator to the Game Logic Class
+	 * @param random SplittableRandom The source of the bot's random choices
+	 */
+	public AggressiveBot(GameCommunicator comm, SplittableRandom random) {
+		super(comm, random);
+		this.hasSword = false;
+	}
+	
 	@Override
 	protected String getAction() {
 		//Gets player location and tile
@@ -44,7 +55,7 @@ public class AggressiveBot extends PlayerFindingBot {
 		if (numberOfNearbyPlayers > 0)
 		{
 			//If there is a player around then attack one at random
-			short randomNumber = (short) (new Random()).nextInt(numberOfNearbyPlayers);
+			short randomNumber = (short) random.nextInt(numberOfNearbyPlayers);
 			return "ATTACK " + getDirectionCharacter(surroundingPlayerDirections.get(randomNumber));
 		}
 		
@@ -95,8 +106,14 @@ public class AggressiveBot extends PlayerFindingBot {
 				return "MOVE " + getDirectionCharacter(lanternPath.get(0));
 			}
 		}
+		//Otherwise it heads for the nearest part of the dungeon it hasn't seen yet
+		ArrayList<CompassDirection> explorePath = getPathToUnexplored();
+		if (explorePath != null)
+		{
+			return "MOVE " + getDirectionCharacter(explorePath.get(0));
+		}
 		//If all else fails then move randomly
-		return "MOVE " + getDirectionCharacter(getRandomNonBlockDirection(getPlayerLocation()));
+		return getRandomMove(getPlayerLocation());
 		
 		
 	}
@@ -1,18 +1,26 @@
 package dod.BotLogic;
 
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
+import dod.ExecutionMode;
 import dod.Communicator.GameCommunicator;
 import dod.game.CompassDirection;
 import dod.game.Location;
 
 /**
  * Represents a bot that will play the game.
- * It extends thread and so can be run in a new thread by calling .start()
+ * It is Runnable and calling .start() runs it using the default execution mode, so bots can be given virtual threads
+ * The bot sleeps until the game tells it that it can act, it can optionally be throttled to act at a human pace.
  * @author Benjamin Dring
  */
-public abstract class Bot extends Thread{
+public abstract class Bot implements Runnable{
+	//The default minimum time between actions in milliseconds, this can be set with the system property dod.bot.delay
+	public static final long DEFAULT_ACTION_DELAY = Long.getLong("dod.bot.delay", 1000);
+	
 	private GameCommunicator comm; //The game communicator
 	protected char[][] lookReply; //Stores the look reply in a two dimensional char array
 	
@@ -26,13 +34,39 @@ public abstract class Bot extends Thread{
 	private boolean updatedLook; //Indicates if the look has been updated
 	private Location playerLocation; //Player location in the dungeon
 	
+	protected final WorldModel world; //Everything the bot has seen of the dungeon
+	private CompassDirection pendingMove; //The move sent to the game that has not been answered yet
+	private boolean awaitingReply; //Indicates a command was sent that the game will answer with SUCCESS or FAIL
+	private boolean successRequested; //Indicates the game has been asked to send SUCCESS when a command works, only used by the thread acting
+	private boolean awaitingCapability; //Indicates the game hasn't answered the request for SUCCESS replies yet
+	private boolean successRefused; //Indicates the game can't send SUCCESS, so a move is taken to have worked when the next look arrives
+	
+	//Guards the game information, the condition is signalled whenever it changes
+	private final ReentrantLock stateLock;
+	private final Condition stateChanged;
+	
+	private long actionDelay; //The minimum time between actions in milliseconds
+	private long lastActionTime; //When the last action was sent
+	
+	protected final SplittableRandom random; //The source of the bot's random choices, only used by the bot's own thread
+	
 	/**
-	 * Sets up the bot for decision making
+	 * Sets up the bot for decision making with random choices of its own
 	 * @param comm GameCommunicator The GameCommunicator so it can send commands
 	 */
 	public Bot(GameCommunicator comm){
+		this(comm, new SplittableRandom());
+	}
+	
+	/**
+	 * Sets up the bot for decision making
+	 * @param comm GameCommunicator The GameCommunicator so it can send commands
+	 * @param random SplittableRandom The source of the bot's random choices, such as a stream split from the game's so it can be replayed
+	 */
+	public Bot(GameCommunicator comm, SplittableRandom random){
 		//Sets the default values
 		this.comm = comm;
+		this.random = random;
 		this.lookReply = null;
 		this.goal = -1;
 		this.currentGold = 0;
@@ -40,6 +74,16 @@ public abstract class Bot extends Thread{
 		this.gameOver = false;
 		this.updatedLook = false;
 		this.playerLocation = null;
+		this.world = new WorldModel();
+		this.pendingMove = null;
+		this.awaitingReply = false;
+		this.successRequested = false;
+		this.awaitingCapability = false;
+		this.successRefused = false;
+		this.stateLock = new ReentrantLock();
+		this.stateChanged = stateLock.newCondition();
+		this.actionDelay = DEFAULT_ACTION_DELAY;
+		this.lastActionTime = 0;
 	}
 	
 	/**
@@ -49,21 +93,65 @@ public abstract class Bot extends Thread{
 	public void handelMessage(String message)
 	{
 		message = message.toUpperCase();
-		//If the message is about the GOAL then we need to read off the Goal
-		if (message.startsWith("GOAL"))
-		{
-			convertGoal(message);
-		}
-		//Sets the turn based on the turn messages
-		else if (message.startsWith("STARTTURN"))
+		stateLock.lock();
+		try
 		{
-			this.myTurn = true;
+			//If the message is about the GOAL then we need to read off the Goal
+			if (message.startsWith("GOAL"))
+			{
+				convertGoal(message);
+			}
+			//Sets the turn based on the turn messages
+			else if (message.startsWith("STARTTURN"))
+			{
+				this.myTurn = true;
+			}
+			else if (message.startsWith("ENDTURN"))
+			{
+				this.myTurn = false;
+			}
+			//The command worked so a move has changed where the bot is
+			else if (message.equals("SUCCESS"))
+			{
+				if (pendingMove != null)
+				{
+					world.move(pendingMove);
+					pendingMove = null;
+				}
+				this.awaitingReply = false;
+			}
+			//The game has agreed to send SUCCESS replies
+			else if (message.startsWith("CAPABILITY SUCCESS"))
+			{
+				this.awaitingCapability = false;
+				return;
+			}
+			//The first answer to the request for SUCCESS replies is a FAIL from a game that can't send them,
+			//such as one that doesn't know the CAPABILITY command, so the command sent after it won't get one
+			else if ((message.startsWith("FAIL")) && (this.awaitingCapability))
+			{
+				this.awaitingCapability = false;
+				this.successRefused = true;
+				this.awaitingReply = false;
+			}
+			//A move that failed didn't change where the bot is
+			else if (message.startsWith("FAIL"))
+			{
+				this.pendingMove = null;
+				this.awaitingReply = false;
+			}
+			//Other messages are just ignored by the bot
+			else
+			{
+				return;
+			}
+			//Wakes the bot to see if it can act
+			stateChanged.signalAll();
 		}
-		else if (message.startsWith("ENDTURN"))
+		finally
 		{
-			this.myTurn = false;
+			stateLock.unlock();
 		}
-		//Other messages are just ignored by the bot
 	}
 	
 	/**
@@ -72,15 +160,66 @@ public abstract class Bot extends Thread{
 	 */
 	public void giveLookReply(String[] lookReply)
 	{
-		//Look reply is formated
-		this.lookReply = formatLookReply(lookReply);
-		//Players location may change if the lantern is picked up
-		updatePlayerLocation();
-		//This trigger will cause the thread to react, 
-		// this is done using threading to avoid recursive memory depth
-		this.updatedLook = true;
+		stateLock.lock();
+		try
+		{
+			//Look reply is formated
+			this.lookReply = formatLookReply(lookReply);
+			//Players location may change if the lantern is picked up
+			updatePlayerLocation();
+			//Without SUCCESS replies a move that hasn't failed by the time the look arrives is taken to have worked
+			if ((successRefused) && (pendingMove != null))
+			{
+				world.move(pendingMove);
+				pendingMove = null;
+			}
+			//Looks can be sent when other players change what the bot sees, one that arrives before the bot's
+			//command is answered was made before the command ran so it is where the bot was
+			if (this.playerLocation != null)
+			{
+				world.merge(this.lookReply, this.playerLocation);
+			}
+			//The bot only reacts to the look sent after its command is answered
+			if (!awaitingReply)
+			{
+				//This trigger will wake the bot's thread to react, 
+				// this is done using threading to avoid recursive memory depth
+				this.updatedLook = true;
+				stateChanged.signalAll();
+			}
+		}
+		finally
+		{
+			stateLock.unlock();
+		}
+	}
+	
+	/**
+	 * Sets the minimum time between the bot's actions, a delay of 0 lets the bot act as fast as the game replies
+	 * @param actionDelay long the delay in milliseconds
+	 */
+	public void setActionDelay(long actionDelay)
+	{
+		this.actionDelay = Math.max(0, actionDelay);
 	}
 	
+	/**
+	 * Starts the bot on the executor of the default execution mode
+	 */
+	public void start()
+	{
+		start(ExecutionMode.getDefault().getExecutor());
+	}
+
+	/**
+	 * Starts the bot on a given executor
+	 * @param executor Executor the executor to run the bot
+	 */
+	public void start(Executor executor)
+	{
+		executor.execute(this);
+	}
+
 	/**
 	 * Decides how to react to the game and sends commands
 	 */
@@ -90,20 +229,35 @@ public abstract class Bot extends Thread{
 		try
 		{
 			//Loops until the game ends
-			while (!gameOver)
+			while (true)
 			{
-				//Sleeps allow moves to happen in a human time scale
-				//It also means that the polling of the right conditions
-				//are not done constantly only every second
-				Thread.sleep(1000);
-				//Only act if the look has been updates, it is the players turn and 
-				//the goal has been set
-				if ((this.myTurn) && (this.goal >= 0) && (this.updatedLook))
+				String action;
+				stateLock.lock();
+				try
 				{
+					//Only act if the look has been updated, it is the players turn and 
+					//the goal has been set, until then the bot sleeps until it is woken by a change
+					while ((!gameOver) && (!canAct()))
+					{
+						stateChanged.await();
+					}
+					if (gameOver)
+					{
+						return;
+					}
 					this.updatedLook = false; //Look is set to be unupdated
-					//Performs an action
-					performAction();
+					action = getAction();
+					notePendingMove(action);
+				}
+				finally
+				{
+					stateLock.unlock();
 				}
+				//Delays allow moves to happen in a human time scale
+				throttle();
+				//Performs the action, this is done without the lock as the reply may come back on this thread
+				requestSuccessReplies();
+				this.comm.sendMessageToGame(action);
 			}
 		}
 		catch (InterruptedException e)
@@ -113,13 +267,119 @@ public abstract class Bot extends Thread{
 		}
 	}
 	
+	/**
+	 * Takes the bot's next action straight away if it is able to, without waiting or being throttled.
+	 * This lets the caller's thread drive the bot instead of the bot running on a thread of its own,
+	 * such as a simulation playing games as fast as it can.
+	 * @return boolean true if an action was sent to the game, false if the bot can't act yet
+	 */
+	public boolean step()
+	{
+		String action;
+		stateLock.lock();
+		try
+		{
+			if ((gameOver) || (!canAct()))
+			{
+				return false;
+			}
+			this.updatedLook = false; //Look is set to be unupdated
+			action = getAction();
+			notePendingMove(action);
+		}
+		finally
+		{
+			stateLock.unlock();
+		}
+		//The reply may come back on this thread so the lock is not held
+		requestSuccessReplies();
+		this.comm.sendMessageToGame(action);
+		return true;
+	}
+	
+	/**
+	 * Asks the game to send SUCCESS when a command works, this is only sent before the bot's first action.
+	 * The game's answer comes before the answer to that action, so the bot waits for SUCCESS from then on
+	 * unless the game answers with a FAIL. This is called without the state lock held.
+	 */
+	private void requestSuccessReplies()
+	{
+		if (!successRequested)
+		{
+			successRequested = true;
+			stateLock.lock();
+			try
+			{
+				this.awaitingCapability = true;
+			}
+			finally
+			{
+				stateLock.unlock();
+			}
+			this.comm.sendMessageToGame("CAPABILITY SUCCESS");
+		}
+	}
+	
+	/**
+	 * Remembers the direction of a move that is about to be sent so the bot's position can be kept track of,
+	 * the move is only made in the bot's model of the dungeon once the game says it worked
+	 * @param action String the action about to be sent to the game
+	 */
+	private void notePendingMove(String action)
+	{
+		if ((action != null) && (action.startsWith("MOVE ")) && (action.length() == 6))
+		{
+			this.pendingMove = CompassDirection.fromChar(action.charAt(5));
+		}
+		else
+		{
+			this.pendingMove = null;
+		}
+		//These are the commands the game answers with SUCCESS or FAIL
+		this.awaitingReply = (!successRefused) && (action != null) && ((action.startsWith("MOVE ")) ||
+				(action.startsWith("ATTACK ")) || (action.startsWith("GIFT ")) || (action.equals("PICKUP")));
+	}
+	
+	/**
+	 * Checks if the bot can act, the state lock must be held
+	 * @return boolean true if the look has been updated, it is the player's turn, the goal has been set
+	 * and the bot's last command has been answered
+	 */
+	private boolean canAct()
+	{
+		return ((this.myTurn) && (this.goal >= 0) && (this.updatedLook) && (!this.awaitingReply));
+	}
+	
+	/**
+	 * Waits until the action delay has passed since the last action
+	 * @throws InterruptedException
+	 */
+	private void throttle() throws InterruptedException
+	{
+		long waitTime = (lastActionTime + actionDelay) - System.currentTimeMillis();
+		if (waitTime > 0)
+		{
+			Thread.sleep(waitTime);
+		}
+		lastActionTime = System.currentTimeMillis();
+	}
+	
 	/**
 	 * Kills the bot so the bot stops
 	 */
 	public void die()
 	{
 		//This effectively allows the run() function to terminate so the thread ends
-		this.gameOver = true;
+		stateLock.lock();
+		try
+		{
+			this.gameOver = true;
+			stateChanged.signalAll();
+		}
+		finally
+		{
+			stateLock.unlock();
+		}
 	}
 	
 	/**
@@ -181,11 +441,27 @@ public abstract class Bot extends Thread{
 		else
 		{
 			//Random Index is made and direction is returned
-			int RandomNumber = (new Random()).nextInt(listSize);
+			int RandomNumber = random.nextInt(listSize);
 			return possibleDirections.get(RandomNumber);
 		}
 	}
 	
+	/**
+	 * Forms a command to move in a random direction that is not blocking a player
+	 * @param location Location the location to move from
+	 * @return String the move command, ENDTURN if the bot is boxed in and can't move anywhere
+	 */
+	protected String getRandomMove(Location location)
+	{
+		CompassDirection direction = getRandomNonBlockDirection(location);
+		if (direction == null)
+		{
+			//There is nowhere to go so the turn is given up
+			return "ENDTURN";
+		}
+		return "MOVE " + getDirectionCharacter(direction);
+	}
+	
 	/**
 	 * Gets the player's location
 	 * @return Location the player's location on the look reply
@@ -212,7 +488,16 @@ public abstract class Bot extends Thread{
 	 */
 	protected boolean doesBlock(Location location)
 	{
-		char tile = getTile(location);
+		return doesBlockTile(getTile(location));
+	}
+	
+	/**
+	 * Checks if a tile character blocks a player
+	 * @param tile char the tile character
+	 * @return boolean that indicates if it blocks a player
+	 */
+	protected boolean doesBlockTile(char tile)
+	{
 		return ((tile == 'X')||(tile == '#')||(tile == 'P')||(tile == 'Q')||(tile == 'R')||(tile == 'K'));
 	}
 	
@@ -290,14 +575,6 @@ public abstract class Bot extends Thread{
 		}
 	}
 	
-	/**
-	 * Sends a command to the game
-	 */
-	private void performAction()
-	{
-		this.comm.sendMessageToGame(getAction());
-	}
-	
 	/**
 	 * Gets the command decided by the bot
 	 * @return String the command
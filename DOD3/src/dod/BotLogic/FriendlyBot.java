@@ -1,7 +1,7 @@
 package dod.BotLogic;
 
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 import dod.Communicator.GameCommunicator;
 import dod.game.CompassDirection;
@@ -19,6 +19,17 @@ public class FriendlyBot extends PlayerFindingBot {
 		super(comm);
 		this.hasArmour = false;
 	}
+	
+	/**
+	 * The constructor for the friendly bot it sets up it's decision making processes and 
+	 * Prepares communication with the game
+	 * @param comm GameComunicator The communicator to the Game Logic Class
+	 * @param random SplittableRandom The source of the bot's random choices
+	 */
+	public FriendlyBot(GameCommunicator comm, SplittableRandom random) {
+		super(comm, random);
+		this.hasArmour = false;
+	}
 
 	@Override
 	protected String getAction() {
@@ -44,7 +55,7 @@ public class FriendlyBot extends PlayerFindingBot {
 			if (numberOfNearbyPlayers > 0)
 			{
 				//If there is a nearby player then give gold to a player at random
-				short randomNumber = (short) (new Random()).nextInt(numberOfNearbyPlayers);
+				short randomNumber = (short) random.nextInt(numberOfNearbyPlayers);
 				this.currentGold -= 1;
 				return "GIFT " + getDirectionCharacter(surroundingPlayerDirections.get(randomNumber));
 			}
@@ -100,8 +111,14 @@ public class FriendlyBot extends PlayerFindingBot {
 				return "MOVE " + getDirectionCharacter(lanternPath.get(0));
 			}
 		}
+		//Otherwise it heads for the nearest part of the dungeon it hasn't seen yet
+		ArrayList<CompassDirection> explorePath = getPathToUnexplored();
+		if (explorePath != null)
+		{
+			return "MOVE " + getDirectionCharacter(explorePath.get(0));
+		}
 		//If all else fails move randomly
-		return "MOVE " + getDirectionCharacter(getRandomNonBlockDirection(getPlayerLocation()));
+		return getRandomMove(getPlayerLocation());
 	}
 
 }
@@ -1,6 +1,7 @@
 package dod.BotLogic;
 
 import java.util.ArrayList;
+import java.util.SplittableRandom;
 
 import dod.Communicator.GameCommunicator;
 import dod.game.CompassDirection;
@@ -21,6 +22,16 @@ public class ObjectiveBot extends PathFindingBot {
 		super(comm);
 	}
 	
+	/**
+	 * The constructor for the objective bot it sets up it's decision making processes and 
+	 * Prepares communication with the game
+	 * @param comm GameComunicator The communicator to the Game Logic Class
+	 * @param random SplittableRandom The source of the bot's random choices
+	 */
+	public ObjectiveBot(GameCommunicator comm, SplittableRandom random) {
+		super(comm, random);
+	}
+	
 	@Override
 	protected String getAction() {
 		//gets the player location and tile
@@ -67,8 +78,14 @@ public class ObjectiveBot extends PathFindingBot {
 				return "MOVE " + getDirectionCharacter(lanternPath.get(0));
 			}
 		}
+		//Otherwise it heads for the nearest part of the dungeon it hasn't seen yet
+		ArrayList<CompassDirection> explorePath = getPathToUnexplored();
+		if (explorePath != null)
+		{
+			return "MOVE " + getDirectionCharacter(explorePath.get(0));
+		}
 		//If all else fails it moves randomly
-		return "MOVE " + getDirectionCharacter(getRandomNonBlockDirection(getPlayerLocation()));
+		return getRandomMove(getPlayerLocation());
 	}
 
 }
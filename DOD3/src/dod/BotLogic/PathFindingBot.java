@@ -1,6 +1,9 @@
 package dod.BotLogic;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.SplittableRandom;
 
 import dod.Communicator.GameCommunicator;
 import dod.game.CompassDirection;
@@ -11,6 +14,21 @@ import dod.game.Location;
  * @author Benjamin Dring
  */
 public abstract class PathFindingBot extends Bot {
+	//The change in row and column for a movement north, south, east and west
+	private static final int[] ROW_OFFSETS = {-1, 1, 0, 0};
+	private static final int[] COL_OFFSETS = {0, 0, 1, -1};
+	
+	private int[] reachedFrom; //The tile each tile was first reached from in the last search, -1 if it was not reached
+	private int[] searchQueue; //Tiles waiting to be searched from, reused between searches
+	
+	//The plan being followed over the world model, it is kept until something makes it out of date
+	private ArrayList<CompassDirection> plan; //The movements of the plan, null if there isn't one
+	private ArrayList<Location> planTiles; //The tile each movement of the plan ends on
+	private Location planStart; //Where the bot was when the plan was made
+	private String planTargets; //The items the plan leads to, null if it leads to unexplored tiles
+	private int planStep; //The number of movements of the plan that have been taken
+	private int planItemAppearances; //The number of times the plan's targets had appeared when the plan was made
+	private int planResets; //The world model's resets when the plan was made
 	
 	/**
 	 * The constructor for a path finding bot it sets up it's decision making processes and 
@@ -21,321 +39,304 @@ public abstract class PathFindingBot extends Bot {
 		super(comm);
 	}
 	
+	/**
+	 * The constructor for a path finding bot it sets up it's decision making processes and 
+	 * Prepares communication with the game
+	 * @param comm GameComunicator The communicator to the Game Logic Class
+	 * @param random SplittableRandom The source of the bot's random choices
+	 */
+	public PathFindingBot(GameCommunicator comm, SplittableRandom random) {
+		super(comm, random);
+	}
+	
+	/**
+	 * Finds the shortest path to the nearest tile of a kind that the bot has seen, even if it is no longer in sight
+	 * @param tile char The tile character to find a path to
+	 * @return ArrayList<CompassDirection> the path to the nearest tile, null if none can be reached
+	 */
 	protected ArrayList<CompassDirection> getShortestPathToTile(char tile)
 	{
-		ArrayList<CompassDirection> shortestPath = null;
-		for (int row = 0; row < this.lookReply.length; row++)
+		return getPlannedPath(String.valueOf(tile));
+	}
+	
+	/**
+	 * Finds the shortest path to the nearest part of the dungeon the bot hasn't seen yet
+	 * @return ArrayList<CompassDirection> the path, null if the bot has seen everything it can reach
+	 */
+	protected ArrayList<CompassDirection> getPathToUnexplored()
+	{
+		return getPlannedPath(null);
+	}
+	
+	/**
+	 * Gets the rest of the current plan if it is still good, otherwise it makes a new plan over the world model.
+	 * Most turns nothing that matters has changed since the last step so the plan only needs checking, not searching for again.
+	 * @param targetTiles String the item characters to find a path to, null to find the nearest unexplored tiles
+	 * @return ArrayList<CompassDirection> the path, null if there isn't one
+	 */
+	private ArrayList<CompassDirection> getPlannedPath(String targetTiles)
+	{
+		if (isPlanValid(targetTiles))
 		{
-			for (int col = 0; col < this.lookReply[0].length; col++)
-			{
-				if (tile == lookReply[row][col])
-				{
-					ArrayList<CompassDirection> nextPath = pathFindTo(new Location(col, row));
-					if (shortestPath == null)
-					{
-						shortestPath = nextPath;
-					}
-					else if ((shortestPath.size() > nextPath.size()) && (nextPath.size() > 0))
-					{
-						shortestPath = nextPath;
-					}
-				}
-			}
+			return new ArrayList<CompassDirection>(plan.subList(planStep, plan.size()));
+		}
+		ArrayList<CompassDirection> path = (targetTiles == null) ? world.findPathToUnexplored() : world.findPath(targetTiles);
+		//Only paths are kept, so a search for something else that finds nothing doesn't throw away a good plan
+		if (path != null)
+		{
+			makePlan(path, targetTiles);
 		}
-		return shortestPath;
+		return path;
 	}
 	
 	/**
-	 * This function finds the shortest path from one destination to another and gives it's output as a series of directions which
-	 * if executed in order will take the player from one place to the other.
-	 * @param destinationX int The row number of the tile you wish to get to
-	 * @param destinationY int The column number of the tile you wish to get to
-	 * @param startX int the row number you wish to start from
-	 * @param startY the column number you wish to start from
-	 * @param map the visible map that the execution will take place
-	 * @param visibleMapSize int the size of a length of the visible map
-	 * @return ArrayList<CompassDirection> contains all the necessary movement directions to complete the path, it returns null if there is no path.
+	 * Remembers a path as the plan being followed
+	 * @param path ArrayList<CompassDirection> the path from where the bot is now
+	 * @param targetTiles String the item characters the path leads to, null if it leads to unexplored tiles
 	 */
-	protected ArrayList<CompassDirection> pathFindTo(Location destinationLocation)
-	{	
-		Location playerLocation = getPlayerLocation();
-		
-		//This is a map that's the same size of the visible character map but stores integers instead
-		//these integers hold the number of steps required to get from the destination to the point on the character map of the same indexe
-		//by default it starts of as null (hence why Integer is used over int)
-		Integer[][] stepCounterMap = new Integer[lookReply.length][lookReply[0].length];
-		
-		//The destination is of course 0 steps away so that is added in
-		stepCounterMap[destinationLocation.getRow()][destinationLocation.getCol()] = 0;
-		
-		//This is an arrayList of all coordinates of the stepCounterMap that have been recorded, this list's order is very important for my algorithm
-		ArrayList<Location> cordList = new ArrayList<Location>();
-		//The destination coordinates are already present so they are put in the list
-		cordList.add(destinationLocation);
+	private void makePlan(ArrayList<CompassDirection> path, String targetTiles)
+	{
+		this.plan = path;
+		this.planTargets = targetTiles;
+		this.planStart = world.getPosition();
+		this.planTiles = new ArrayList<Location>(path.size());
+		Location tile = planStart;
+		for (CompassDirection direction : path)
+		{
+			tile = tile.atCompassDirection(direction);
+			planTiles.add(tile);
+		}
+		this.planStep = 0;
+		this.planItemAppearances = (targetTiles == null) ? 0 : world.getItemAppearances(targetTiles);
+		this.planResets = world.getResets();
+	}
+	
+	/**
+	 * Checks the plan against what the bot has seen since it was made and moves it on by the steps the bot has taken.
+	 * The plan is out of date if it leads somewhere else, if the bot has left it, if another player is in the way
+	 * or if the target is no longer there. A plan to an item is also out of date if another of those items has come into view,
+	 * as it may be nearer.
+	 * @param targetTiles String the item characters being looked for, null if unexplored tiles are being looked for
+	 * @return boolean true if the rest of the plan can be followed
+	 */
+	private boolean isPlanValid(String targetTiles)
+	{
+		if ((plan == null) || (world.getResets() != planResets))
+		{
+			return false;
+		}
+		if ((targetTiles == null) ? (planTargets != null) : (!targetTiles.equals(planTargets)))
+		{
+			return false;
+		}
+		if ((targetTiles != null) && (world.getItemAppearances(targetTiles) != planItemAppearances))
+		{
+			return false;
+		}
 		
-		boolean pathFound = false; //Represents if a path is found yet
-		int cordListIndex = 0; //The index that the loop is currently looking at in cordList
+		//The bot is either where it was after the last step or has taken one more
+		Location position = world.getPosition();
+		if ((planStep < planTiles.size()) && (isSameTile(position, planTiles.get(planStep))))
+		{
+			planStep++;
+		}
+		else if (!isSameTile(position, (planStep == 0) ? planStart : planTiles.get(planStep - 1)))
+		{
+			return false;
+		}
+		if (planStep >= planTiles.size())
+		{
+			//The plan has been finished
+			return false;
+		}
 		
-		//So this loops until either a path is found or we have run out of coordinates in the list
-		//If we run out of coordinates it indicates that we found no path
-		//This loop starts out with a single item in the list, but the list can grow.
-		while ((!pathFound) && (cordListIndex < cordList.size()))
-		{	
-			//Firstly it gets the coordinates out from the list
-			Location location = cordList.get(cordListIndex);
-			
-			//We get the numberOfSteps to the next position to be the number of steps to get to this position + 1
-			int numberOfSteps = stepCounterMap[location.getRow()][location.getCol()] + 1;
-			
-			Location[] surroundingTiles = getSurroundingTiles(location); //This contains the 4 surrounding tiles north, south, east & west
-			
-			//It then loops through every tile one movement away
-			for (Location nearbyTile : surroundingTiles)
+		//Every tile left to walk on must still be clear
+		for (int step = planStep; step < planTiles.size(); step++)
+		{
+			Location tile = planTiles.get(step);
+			if ((!world.isWalkable(tile)) || (world.isOccupied(tile)))
 			{
-				//If that tile is the starting tile then we have mapped enough for our path so we break from the loop
-				if ((nearbyTile.getRow() == playerLocation.getRow()) && (nearbyTile.getCol() == playerLocation.getCol()))
-				{
-					pathFound = true;
-					break;
-				}
-				
-				//Otherwise check to see if that direction is valid
-				//Invalid tiles would includes walls, tiles out of bounds and other players
-				//Also if a tile like that already exists and has a lower counter that means
-				//we've already inspected that tile and got there in less steps so we say it's invalid
-				//if we see the same tile with a higher counter then we have found a more efficient route
-				//so the tile is valid and the function will remove the longer route from the list
-				validPathAnalysis validPathResult = isValidPathFindingStep(lookReply, stepCounterMap, 
-						nearbyTile, numberOfSteps, cordList, cordListIndex);
-				
-				//If the Coordinates are valid then we add it to the list and map the counter on the map
-				if ((validPathResult == validPathAnalysis.Valid) || (validPathResult == validPathAnalysis.ValidWithDecrement))
-				{
-					cordList.add(nearbyTile);
-					stepCounterMap[nearbyTile.getRow()][nearbyTile.getCol()] = numberOfSteps;
-				}
-				//If the function had to remove an element of CordLists that is before where our index is pointing
-				//Then it will return ValidWithDecrement which means we have to decrement the cordListIndex
-				//In order to make sure we're still looking through the list in order without skipping elements
-				if (validPathResult == validPathAnalysis.ValidWithDecrement)
-				{
-					cordListIndex--;
-				}
+				return false;
 			}
-			//We then move on to the next element (if it exists)
-			cordListIndex++;
 		}
-		
-		//If we ran out of coordinates and the list was finished then there is no visible path so we return null
-		if(!pathFound)
+		Location end = planTiles.get(planTiles.size() - 1);
+		if (targetTiles == null)
+		{
+			return world.isNextToUnexplored(end);
+		}
+		return (targetTiles.indexOf(world.getItem(end)) >= 0);
+	}
+	
+	/**
+	 * @param first Location a tile
+	 * @param second Location another tile
+	 * @return boolean true if they are the same tile
+	 */
+	private static boolean isSameTile(Location first, Location second)
+	{
+		return (first.getCol() == second.getCol()) && (first.getRow() == second.getRow());
+	}
+	
+	/**
+	 * Finds the shortest path on the look reply to the nearest tile of any of the given kinds with a single search from the player.
+	 * The search spreads out from the player one step at a time so the first target it reaches is the nearest,
+	 * this means it costs the same however many targets are in sight.
+	 * @param targetTiles String The tile characters that can be found
+	 * @param nextToTarget boolean true if the path should end next to a target rather than on it, used for tiles that block such as players
+	 * @return ArrayList<CompassDirection> the path to the nearest target, null if none can be reached or the player is already there
+	 */
+	protected ArrayList<CompassDirection> getShortestPathToTiles(String targetTiles, boolean nextToTarget)
+	{
+		int found = search(targetTiles, nextToTarget, -1);
+		return (found < 0) ? null : buildPath(found);
+	}
+	
+	/**
+	 * This function finds the shortest path from the player to a tile and gives it's output as a series of directions which
+	 * if executed in order will take the player from one place to the other.
+	 * @param destinationLocation Location The location of the tile you wish to get to
+	 * @return ArrayList<CompassDirection> contains all the necessary movement directions to complete the path, it returns null if there is no path.
+	 */
+	protected ArrayList<CompassDirection> pathFindTo(Location destinationLocation)
+	{
+		if ((destinationLocation.getRow() < 0) || (destinationLocation.getRow() >= lookReply.length) ||
+				(destinationLocation.getCol() < 0) || (destinationLocation.getCol() >= lookReply[0].length))
 		{
 			return null;
 		}
+		int found = search("", false, (destinationLocation.getRow() * lookReply[0].length) + destinationLocation.getCol());
+		return (found < 0) ? null : buildPath(found);
+	}
+	
+	/**
+	 * Searches outwards from the player through the tiles that don't block until it reaches a target.
+	 * Tiles are numbered row by row across the look reply and the tile each one was first reached from is recorded,
+	 * which is enough to follow the path back to the player once a target is found.
+	 * @param targetTiles String The tile characters that are targets
+	 * @param nextToTarget boolean true if a tile next to a target is what is being searched for
+	 * @param destination int The number of a single tile that is a target, -1 if there isn't one
+	 * @return int The number of the tile the path ends on, -1 if no target can be reached
+	 */
+	private int search(String targetTiles, boolean nextToTarget, int destination)
+	{
+		final int width = lookReply[0].length;
+		final int tileCount = lookReply.length * width;
+		if ((reachedFrom == null) || (reachedFrom.length < tileCount))
+		{
+			reachedFrom = new int[tileCount];
+			searchQueue = new int[tileCount];
+		}
+		Arrays.fill(reachedFrom, 0, tileCount, -1);
 		
-		//implied else
-		
-		//Now that we have mapped these step counters we can construct out path which will be in the form ArrayList<CompassDirection>
-		ArrayList<CompassDirection> path = new ArrayList<CompassDirection>(); //The path we need to take
-		
-		//We will now start from the player's position and follow the smallest numbers we can find to get to our destination
-		Location currentPositionInPath = new Location(playerLocation.getRow(), playerLocation.getCol()); //This is a copy not a reference
+		Location playerLocation = getPlayerLocation();
+		int start = (playerLocation.getRow() * width) + playerLocation.getCol();
+		reachedFrom[start] = start;
+		searchQueue[0] = start;
+		int head = 0;
+		int tail = 1;
 		
-		//Every loop we move one space in the path until we reach the end
-		while (true)
+		while (head < tail)
 		{
-			int minimunNearbyCounter = -1; //This represents the smallest counter we've found around us
-			boolean nearbyDirectionFound = false; //this represents if we have found a direction to go yet
-			CompassDirection nextMovement = null; //This holds the next movement we under take
-			
-			//We then get the locations for each of the positions around the current position in the path
-			Location northCords = currentPositionInPath.atCompassDirection(CompassDirection.NORTH);
-			Location southCords = currentPositionInPath.atCompassDirection(CompassDirection.SOUTH);
-			Location eastCords = currentPositionInPath.atCompassDirection(CompassDirection.EAST);
-			Location westCords = currentPositionInPath.atCompassDirection(CompassDirection.WEST);
-			
-			//isNextInPath checks if those coordinates are a good idea to follow, it checks if it's counter is mapped
-			//and if it has a smaller counter number than we have found so far, multiple directions can pass hence
-			//the lack of else-ifs (this occurs when there are multiple directions with different counters)
-			
-			//In each of the 4 directions if it is a good candidate for the next step in the pass the information is stored
-			//in the relevant variables described within the while loop
-			if (isNextInPath(northCords, stepCounterMap, lookReply, minimunNearbyCounter, false))
-			{
-				nearbyDirectionFound = true;
-				minimunNearbyCounter = stepCounterMap[northCords.getRow()][northCords.getCol()];
-				nextMovement = CompassDirection.NORTH;
-				currentPositionInPath = northCords;
-			}
-			
-			if (isNextInPath(southCords, stepCounterMap, lookReply, minimunNearbyCounter, nearbyDirectionFound))
-			{
-				nearbyDirectionFound = true;
-				minimunNearbyCounter = stepCounterMap[southCords.getRow()][southCords.getCol()];
-				nextMovement = CompassDirection.SOUTH;
-				currentPositionInPath = southCords;
-			}
+			int tile = searchQueue[head++];
+			int row = tile / width;
+			int col = tile % width;
 			
-			if (isNextInPath(eastCords, stepCounterMap, lookReply, minimunNearbyCounter, nearbyDirectionFound))
+			//The player's own tile is never a target as there would be no movement to make
+			if ((tile != start) && isTarget(tile, row, col, targetTiles, nextToTarget, destination))
 			{
-				nearbyDirectionFound = true;
-				minimunNearbyCounter = stepCounterMap[eastCords.getRow()][eastCords.getCol()];
-				nextMovement = CompassDirection.EAST;
-				currentPositionInPath = eastCords;
+				return tile;
 			}
 			
-			if (isNextInPath(westCords, stepCounterMap, lookReply, minimunNearbyCounter, nearbyDirectionFound))
+			//Each of the tiles one movement away, in the order north, south, east, west
+			for (int direction = 0; direction < 4; direction++)
 			{
-				nearbyDirectionFound = true;
-				minimunNearbyCounter = stepCounterMap[westCords.getRow()][westCords.getCol()];
-				nextMovement = CompassDirection.WEST;
-				currentPositionInPath = westCords;
-			}
-			
-			//after it checks all the directions it adds the smallest countered direction onto the path
-			path.add(nextMovement);
-			
-			//The first part of the algorithm should prevent this happening but if it does then
-			//we don't want to be in an indefinite loop
-			if (nextMovement == null)
-			{
-				return null;
-			}
-			
-			//If we have found a 0 counter that means we have found our destination
-			//this means we can stop forming a path so we break from the loop
-			if (minimunNearbyCounter == 0)
-			{
-				break;
+				int nextRow = row + ROW_OFFSETS[direction];
+				int nextCol = col + COL_OFFSETS[direction];
+				if ((nextRow < 0) || (nextRow >= lookReply.length) || (nextCol < 0) || (nextCol >= width))
+				{
+					continue;
+				}
+				int next = (nextRow * width) + nextCol;
+				//Tiles already reached were reached in fewer steps, walls and other players can't be walked through
+				if ((reachedFrom[next] < 0) && (!doesBlockTile(lookReply[nextRow][nextCol])))
+				{
+					reachedFrom[next] = tile;
+					searchQueue[tail++] = next;
+				}
 			}
 		}
-		
-		//it then returns the completed path
-		return path;
-		
+		return -1;
 	}
 	
 	/**
-	 * Using information regarding the progress and comparisons in a path it makes an informed decision if the given coordinates would be
-	 * a good candidate for the next moment
-	 * @param cords Loaction The location you wish to be checked
-	 * @param counterMap Integer[][] A map of all of the step counters from the destination to the start
-	 * @param minimunCounterSoFar int The number of counters of the smallest countered direction it has looked at
-	 * @param minimunCounterFound boolean Whether it has found a valid direction yet
-	 * @return boolean true means it is a good candidate when false means it is not
+	 * Checks if the search has found what it is looking for
+	 * @param tile int The number of the tile
+	 * @param row int The row of the tile
+	 * @param col int The column of the tile
+	 * @param targetTiles String The tile characters that are targets
+	 * @param nextToTarget boolean true if a tile next to a target is what is being searched for
+	 * @param destination int The number of a single tile that is a target, -1 if there isn't one
+	 * @return boolean true if the tile is where the path should end
 	 */
-	private boolean isNextInPath(Location cords, Integer[][] counterMap,char[][] map ,int minimunCounterSoFar, boolean minimunCounterFound)
+	private boolean isTarget(int tile, int row, int col, String targetTiles, boolean nextToTarget, int destination)
 	{
-		//It checks to see the coordinates are in the range of the map
-		if ((cords.getRow() >= 0) && (cords.getRow() < map.length) && 
-				(cords.getCol() >= 0) && (cords.getCol() < map[0].length))
+		if (tile == destination)
 		{
-			//It then gets the counter from the counterMap
-			Integer counter = counterMap[cords.getRow()][cords.getCol()];
-			//If those coordinates have not been mapped then we can return false as that cannot be the shortest route
-			if (counter == null)
-			{
-				return false;
-			}
-
-			//If we have not found a direction yet then this is now a candidate and so can return true
-			else if (!minimunCounterFound)
-			{
-				return true;
-			}
-
-			//If we have found a direction but this one has a smaller counter then we can return true
-			//If it has a larger counter we return false by default
-			else if (minimunCounterSoFar > counter)
+			return true;
+		}
+		if (!nextToTarget)
+		{
+			return (targetTiles.indexOf(lookReply[row][col]) >= 0);
+		}
+		//Looks at each of the tiles one movement away for a target
+		for (int direction = 0; direction < 4; direction++)
+		{
+			int nextRow = row + ROW_OFFSETS[direction];
+			int nextCol = col + COL_OFFSETS[direction];
+			if ((nextRow >= 0) && (nextRow < lookReply.length) && (nextCol >= 0) && (nextCol < lookReply[0].length)
+					&& (targetTiles.indexOf(lookReply[nextRow][nextCol]) >= 0))
 			{
 				return true;
 			}
 		}
-		//implied else
 		return false;
 	}
 	
 	/**
-	 * Gets The coordinates of all of the surrounding tiles in the 4 direction around the input coordinates. 
-	 * @param cords Location The location you wish to centralise this function around
-	 * @return Location[] an array of length 4 containing the locations
-	 */
-	private Location[] getSurroundingTiles(Location cords)
-	{
-		Location[] surroundingTiles = new Location[4];
-		surroundingTiles[0] = cords.atCompassDirection(CompassDirection.NORTH);
-		surroundingTiles[1] = cords.atCompassDirection(CompassDirection.SOUTH);
-		surroundingTiles[2] = cords.atCompassDirection(CompassDirection.EAST);
-		surroundingTiles[3] = cords.atCompassDirection(CompassDirection.WEST);
-		return surroundingTiles;
-	}
-	
-	/**
-	 * The Results from validPathAnalysis It either replies with valid, invalid of ValidWithDecrmeents which means it is valid if you decrement
-	 * the index of the list.
-	 * @author Benjamin Dring
-	 */
-	private enum validPathAnalysis
-	{
-		Invalid, Valid, ValidWithDecrement;
-	}
-	
-	/**
-	 * Checks to see if a coordinates is set 
-	 * @param map char[][] The Map of characters
-	 * @param counterMap Integer[][] The map of step counters
-	 * @param cords Location The location of the potential move
-	 * @param currentCounter int The smallest counter we have seen so far
-	 * @param cordList ArrayList<Location> The full path
-	 * @param cordListIndex int The index of the cordList being observed
-	 * @return validPathAnalysis An Enum with the results meaning different things
+	 * Follows the tiles recorded by the last search back from where it ended to the player
+	 * @param end int The number of the tile the path ends on
+	 * @return ArrayList<CompassDirection> The movements from the player to the end of the path, in order
 	 */
-	private validPathAnalysis isValidPathFindingStep (char[][] map, Integer[][] counterMap, Location cords,
-			int currentCounter, ArrayList<Location> cordList, int cordListIndex)
+	private ArrayList<CompassDirection> buildPath(int end)
 	{
-		//First it checks to see if the coordinates are in the bounds of the map
-		if ((cords.getRow() >= 0) && (cords.getRow() < map.length) && 
-				(cords.getCol() >= 0) && (cords.getCol() < map[0].length))
+		final int width = lookReply[0].length;
+		ArrayList<CompassDirection> path = new ArrayList<CompassDirection>();
+		int tile = end;
+		while (reachedFrom[tile] != tile)
 		{
-			//It then checks to see if that tile is a wall
-			if (!doesBlock(cords))
+			int previous = reachedFrom[tile];
+			int difference = tile - previous;
+			if (difference == -width)
 			{
-				//It gets the counter from the counter map
-				Integer cordCounter = counterMap[cords.getRow()][cords.getCol()];
-				//If the coordinates counter is not yet matched it is valid
-				if(cordCounter == null)
-				{
-					return validPathAnalysis.Valid;
-				}
-				//implied else
-				//if the current counter is smaller than the already mapped one then it is valid
-				if (currentCounter < cordCounter)
-				{
-					//It needs to remove the old Coordinates from the list however
-					//it loops through the entire list
-					for (int listIndex = 0; listIndex < cordList.size(); listIndex++)
-					{
-						//It gets the coordinates from the list and checks to see if the coordinates match
-						Location listElementCords = cordList.get(listIndex);
-						if ((listElementCords.getCol() == cords.getCol()) && (listElementCords.getRow() == cords.getRow()))
-						{
-							//if they do match the coordinates are removed from the list
-							cordList.remove(listIndex);
-							//If the index of the removed element is less than the current index then we to decrement the index when we finish
-							if (listIndex <= cordListIndex)
-							{
-								return validPathAnalysis.ValidWithDecrement;
-							}
-							else
-							{
-								return validPathAnalysis.Valid;
-							}
-						}
-					}
-				}
+				path.add(CompassDirection.NORTH);
 			}
+			else if (difference == width)
+			{
+				path.add(CompassDirection.SOUTH);
+			}
+			else if (difference == 1)
+			{
+				path.add(CompassDirection.EAST);
+			}
+			else
+			{
+				path.add(CompassDirection.WEST);
+			}
+			tile = previous;
 		}
-		//By default it is invalid
-		return validPathAnalysis.Invalid;
+		//The path was built from the end backwards
+		Collections.reverse(path);
+		return path;
 	}
 	
-}
\ No newline at end of file
+}
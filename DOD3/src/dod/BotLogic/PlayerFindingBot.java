@@ -1,12 +1,15 @@
 package dod.BotLogic;
 
 import java.util.ArrayList;
+import java.util.SplittableRandom;
 
 import dod.Communicator.GameCommunicator;
 import dod.game.CompassDirection;
 import dod.game.Location;
 
 public abstract class PlayerFindingBot extends PathFindingBot {
+	//The tile characters of the other players
+	private static final String PLAYER_TILES = "PRKQ";
 	
 	/**
 	 * The constructor for a player finding bot it sets up it's decision making processes and 
@@ -17,6 +20,16 @@ public abstract class PlayerFindingBot extends PathFindingBot {
 		super(comm);
 	}
 	
+	/**
+	 * The constructor for a player finding bot it sets up it's decision making processes and 
+	 * Prepares communication with the game
+	 * @param comm GameComunicator The communicator to the Game Logic Class
+	 * @param random SplittableRandom The source of the bot's random choices
+	 */
+	public PlayerFindingBot(GameCommunicator comm, SplittableRandom random) {
+		super(comm, random);
+	}
+	
 	/**
 	 * Gets the surrounding tiles containing a player
 	 * @param location Location the location of the tile this function works round
@@ -60,34 +73,9 @@ public abstract class PlayerFindingBot extends PathFindingBot {
 	 */
 	protected ArrayList<CompassDirection> getShortestPathToPlayer()
 	{
-		//This can't just use PathTo as we want to get near a player not on the player
-		//So we have to consider all next-to tiles
-		
-		ArrayList<CompassDirection> shortestPath = null;
-		//Loops through every tile on the look reply
-		for(int row = 0; row < lookReply.length; row++)
-		{
-			for(int col = 0; col < lookReply[0].length; col++)
-			{
-				//if the player is a tile
-				if (isPlayerTile(lookReply[row][col]))
-				{
-					Location otherPlayerLocation = new Location(col, row);
-					//Function call for each direction
-					//Function works out which path is quickest
-					//The quickest path is then placed in the variable shortestPath for future comparisons
-					shortestPath = pathFindToAndCompare(otherPlayerLocation.atCompassDirection(CompassDirection.NORTH),
-							shortestPath);
-					shortestPath = pathFindToAndCompare(otherPlayerLocation.atCompassDirection(CompassDirection.SOUTH),
-							shortestPath);
-					shortestPath = pathFindToAndCompare(otherPlayerLocation.atCompassDirection(CompassDirection.EAST),
-							shortestPath);
-					shortestPath = pathFindToAndCompare(otherPlayerLocation.atCompassDirection(CompassDirection.WEST),
-							shortestPath);
-				}
-			}
-		}
-		return shortestPath;
+		//This can't just path find to the player as we want to get near a player not on the player
+		//So the search looks for the nearest tile next to one
+		return getShortestPathToTiles(PLAYER_TILES, true);
 	}
 	
 	/**
@@ -97,7 +85,7 @@ public abstract class PlayerFindingBot extends PathFindingBot {
 	 */
 	protected boolean isPlayerTile(char tile)
 	{
-		return ((tile == 'P') || (tile == 'R') || (tile == 'K') || (tile == 'Q'));
+		return (PLAYER_TILES.indexOf(tile) >= 0);
 	}
 	
 	/**
@@ -110,44 +98,5 @@ public abstract class PlayerFindingBot extends PathFindingBot {
 		char tile = getTile(location);
 		return isPlayerTile(tile);
 	}
-	
-	/**
-	 * Calculates a path to a given location and returns the shortest path of the one just worked out and an additional given path given.
-	 * @param location The location for a path to be worked out
-	 * @param shortestPath The current shortest path to compare with the new one
-	 * @return ArrayList<CompassDirection> the shortest of the two paths
-	 */
-	private ArrayList<CompassDirection> pathFindToAndCompare(Location location, ArrayList<CompassDirection> shortestPath)
-	{
-		//If the location is out of bounds or is a wall then there is no path to it
-		if ((location.getCol() < 0) || (location.getCol() >= lookReply.length) ||
-				(location.getRow() < 0) || (location.getRow() >= lookReply[0].length) || (doesBlock(location)))
-		{
-			return shortestPath;
-		}
-		else
-		{
-			//Calculates the path
-			ArrayList<CompassDirection> nextPath = pathFindTo(location);
-			//Prioritises the non-null path
-			if (shortestPath == null)
-			{
-				return nextPath;
-			}
-			else if (nextPath == null)
-			{
-				return shortestPath;
-			}
-			//Compares the number of movements in each path and decides on a result
-			else if ((shortestPath.size() > nextPath.size()) && (nextPath.size() > 0))
-			{
-				return nextPath;
-			}
-			else
-			{
-				return shortestPath;
-			}
-		}
-	}
 
 }
@@ -1,5 +1,7 @@
 package dod.BotLogic;
 
+import java.util.SplittableRandom;
+
 import dod.Communicator.GameCommunicator;
 import dod.game.Location;
 
@@ -18,6 +20,16 @@ public class RandomBot extends Bot {
 		super(comm);
 	}
 	
+	/**
+	 * The constructor for the random bot it sets up it's decision making processes and 
+	 * Prepares communication with the game
+	 * @param comm GameComunicator The communicator to the Game Logic Class
+	 * @param random SplittableRandom The source of the bot's random choices
+	 */
+	public RandomBot(GameCommunicator comm, SplittableRandom random) {
+		super(comm, random);
+	}
+	
 	@Override
 	protected String getAction()
 	{
@@ -38,19 +50,10 @@ public class RandomBot extends Bot {
 //			return "PICKUP";
 //		}
 		
-		//Otherwise we move randomly
+		//Otherwise we move randomly, if there are no directions the turn is just ended
 		else
 		{
-			try
-			{
-				//Forms a move command
-				return "MOVE " + getDirectionCharacter(getRandomNonBlockDirection(playerLocation));
-			}
-			catch (NullPointerException e)
-			{
-				//If there are no directions just end the turn
-				return "ENDTURN";
-			}
+			return getRandomMove(playerLocation);
 		}
 	}
 
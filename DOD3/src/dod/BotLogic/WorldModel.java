@@ -0,0 +1,553 @@
+package dod.BotLogic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import dod.game.CompassDirection;
+import dod.game.Location;
+
+/**
+ * A bot's memory of the dungeon, it stitches each look reply into a map of everything the bot has seen so far.
+ * The bot never learns where it is in the dungeon so positions are counted from where it started,
+ * and its position is updated by the moves it makes.
+ * Whether each tile has been seen and whether it can be walked on are stored as one bit each,
+ * items are few so they are kept separately by position.
+ * @author Benjamin Dring
+ */
+public class WorldModel {
+	//The number of tiles the map grows by on each side when a look reply doesn't fit in it
+	private static final int GROWTH = 16;
+	//The change in row and column for a movement north, south, east and west
+	private static final int[] ROW_OFFSETS = {-1, 1, 0, 0};
+	private static final int[] COL_OFFSETS = {0, 0, 1, -1};
+	private static final CompassDirection[] DIRECTIONS = {CompassDirection.NORTH, CompassDirection.SOUTH,
+		CompassDirection.EAST, CompassDirection.WEST};
+
+	//The area of the dungeon that is stored, everything outside it has not been seen
+	private int minCol;
+	private int minRow;
+	private int width;
+	private int height;
+	private long[] explored; //A bit for each tile, set if it has been seen
+	private long[] walkable; //A bit for each tile, set if a player can stand on it
+	private final Map<Long, Character> items; //The item last seen on each tile that has one, keyed by position
+	private long[] occupied; //The positions where other players were in the last look reply
+	private int occupiedCount;
+	private final int[] itemAppearances; //Counts the times each item character has appeared on a tile, so plans can tell if there may be a nearer one
+	private int resets; //Counts the times the model has been forgotten
+
+	//The bot's position counted from where it started
+	private int col;
+	private int row;
+
+	//Used by searches, reused between them
+	private int[] reachedFrom;
+	private int[] searchQueue;
+	private boolean[] targets;
+
+	/**
+	 * Creates an empty model, the bot is at 0, 0
+	 */
+	public WorldModel()
+	{
+		this.items = new HashMap<Long, Character>();
+		this.itemAppearances = new int[128];
+		this.occupied = new long[8];
+		clear();
+	}
+
+	/**
+	 * Forgets everything that has been seen and puts the bot back at 0, 0
+	 */
+	public void clear()
+	{
+		this.minCol = -GROWTH;
+		this.minRow = -GROWTH;
+		this.width = GROWTH * 2;
+		this.height = GROWTH * 2;
+		this.explored = new long[wordsFor(width * height)];
+		this.walkable = new long[wordsFor(width * height)];
+		this.items.clear();
+		this.occupiedCount = 0;
+		this.col = 0;
+		this.row = 0;
+		this.resets++;
+	}
+
+	/**
+	 * Moves the bot's position, this should be called once the game has accepted a move
+	 * @param direction CompassDirection the direction the bot moved in
+	 */
+	public void move(CompassDirection direction)
+	{
+		for (int index = 0; index < DIRECTIONS.length; index++)
+		{
+			if (DIRECTIONS[index] == direction)
+			{
+				col += COL_OFFSETS[index];
+				row += ROW_OFFSETS[index];
+			}
+		}
+	}
+
+	/**
+	 * Adds a look reply to the map.
+	 * Walls never move so if the look reply disagrees with the map about one the bot's position must have been lost,
+	 * the map is then forgotten and started again from this look reply.
+	 * @param lookReply char[][] the look reply indexed by row then column
+	 * @param centre Location where the bot is on the look reply
+	 */
+	public void merge(char[][] lookReply, Location centre)
+	{
+		final int top = row - centre.getRow();
+		final int left = col - centre.getCol();
+		ensureCovers(left, top, left + lookReply[0].length - 1, top + lookReply.length - 1);
+
+		occupiedCount = 0;
+		for (int lookRow = 0; lookRow < lookReply.length; lookRow++)
+		{
+			for (int lookCol = 0; lookCol < lookReply[lookRow].length; lookCol++)
+			{
+				char tile = lookReply[lookRow][lookCol];
+				//X marks tiles that can't be seen
+				if (tile == 'X')
+				{
+					continue;
+				}
+				int tileCol = left + lookCol;
+				int tileRow = top + lookRow;
+				int index = indexOf(tileCol, tileRow);
+				boolean wall = (tile == '#');
+				if ((isSet(explored, index)) && (isSet(walkable, index) == wall))
+				{
+					//The look reply doesn't fit the map
+					clear();
+					merge(lookReply, centre);
+					return;
+				}
+				set(explored, index, true);
+				set(walkable, index, !wall);
+				if (isPlayer(tile))
+				{
+					//The player hides what they are standing on, so whatever was there is remembered
+					addOccupied(key(tileCol, tileRow));
+				}
+				else if ((wall) || (tile == '.'))
+				{
+					items.remove(key(tileCol, tileRow));
+				}
+				else
+				{
+					Character previous = items.put(key(tileCol, tileRow), tile);
+					if (((previous == null) || (previous != tile)) && (tile < itemAppearances.length))
+					{
+						itemAppearances[tile]++;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds the shortest path over the map to the nearest tile with any of the given items
+	 * @param targetTiles String the item characters that can be found
+	 * @return ArrayList<CompassDirection> the path to the nearest item, null if none can be reached or the bot is already there
+	 */
+	public ArrayList<CompassDirection> findPath(String targetTiles)
+	{
+		if ((targets == null) || (targets.length < width * height))
+		{
+			targets = new boolean[width * height];
+		}
+		else
+		{
+			Arrays.fill(targets, 0, width * height, false);
+		}
+		boolean anyTargets = false;
+		for (Map.Entry<Long, Character> item : items.entrySet())
+		{
+			if (targetTiles.indexOf(item.getValue()) >= 0)
+			{
+				targets[indexOf(keyCol(item.getKey()), keyRow(item.getKey()))] = true;
+				anyTargets = true;
+			}
+		}
+		//Nothing to search for if none of the items have been seen
+		if (!anyTargets)
+		{
+			return null;
+		}
+		return search(false);
+	}
+
+	/**
+	 * Finds the shortest path over the map to the nearest tile next to one that has not been seen
+	 * @return ArrayList<CompassDirection> the path, null if everything that can be reached has been seen
+	 */
+	public ArrayList<CompassDirection> findPathToUnexplored()
+	{
+		return search(true);
+	}
+
+	/**
+	 * @return Location the bot's position counted from where it started
+	 */
+	public Location getPosition()
+	{
+		return new Location(col, row);
+	}
+
+	/**
+	 * @param location Location the position counted from where the bot started
+	 * @return boolean true if the tile has been seen
+	 */
+	public boolean isExplored(Location location)
+	{
+		return (contains(location.getCol(), location.getRow())) && (isSet(explored, indexOf(location.getCol(), location.getRow())));
+	}
+
+	/**
+	 * @param location Location the position counted from where the bot started
+	 * @return boolean true if the tile has been seen and a player can stand on it
+	 */
+	public boolean isWalkable(Location location)
+	{
+		return (contains(location.getCol(), location.getRow())) && (isSet(walkable, indexOf(location.getCol(), location.getRow())));
+	}
+
+	/**
+	 * @param location Location the position counted from where the bot started
+	 * @return char the item last seen on the tile, '.' if there isn't one
+	 */
+	public char getItem(Location location)
+	{
+		Character item = items.get(key(location.getCol(), location.getRow()));
+		return (item == null) ? '.' : item;
+	}
+
+	/**
+	 * @param location Location the position counted from where the bot started
+	 * @return boolean true if another player was on the tile in the last look reply
+	 */
+	public boolean isOccupied(Location location)
+	{
+		long key = key(location.getCol(), location.getRow());
+		for (int index = 0; index < occupiedCount; index++)
+		{
+			if (occupied[index] == key)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param location Location the position counted from where the bot started
+	 * @return boolean true if any of the tiles one movement away has not been seen
+	 */
+	public boolean isNextToUnexplored(Location location)
+	{
+		return isNextToUnexplored(location.getCol(), location.getRow());
+	}
+
+	/**
+	 * @param itemTiles String item characters
+	 * @return int a count that goes up whenever one of the items appears on a tile
+	 */
+	public int getItemAppearances(String itemTiles)
+	{
+		int count = 0;
+		for (int index = 0; index < itemTiles.length(); index++)
+		{
+			char item = itemTiles.charAt(index);
+			if (item < itemAppearances.length)
+			{
+				count += itemAppearances[item];
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return int a count that goes up whenever the model is forgotten, after which positions are counted from somewhere else
+	 */
+	public int getResets()
+	{
+		return this.resets;
+	}
+
+	/**
+	 * @return int the number of tiles that have been seen
+	 */
+	public int getExploredCount()
+	{
+		int count = 0;
+		for (long word : explored)
+		{
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * Searches outwards from the bot over the tiles that have been seen and can be walked on until it reaches a target.
+	 * Tiles where other players were last seen are avoided as they can't be walked through.
+	 * @param unexplored boolean true if the target is a tile next to one that hasn't been seen,
+	 * 	otherwise the targets are those marked by findPath
+	 * @return ArrayList<CompassDirection> the path to the nearest target, null if none can be reached
+	 */
+	private ArrayList<CompassDirection> search(boolean unexplored)
+	{
+		final int tileCount = width * height;
+		if ((reachedFrom == null) || (reachedFrom.length < tileCount))
+		{
+			reachedFrom = new int[tileCount];
+			searchQueue = new int[tileCount];
+		}
+		Arrays.fill(reachedFrom, 0, tileCount, -1);
+		//Other players are marked as reached so the search goes round them
+		for (int index = 0; index < occupiedCount; index++)
+		{
+			reachedFrom[indexOf(keyCol(occupied[index]), keyRow(occupied[index]))] = -2;
+		}
+
+		int start = indexOf(col, row);
+		reachedFrom[start] = start;
+		searchQueue[0] = start;
+		int head = 0;
+		int tail = 1;
+
+		while (head < tail)
+		{
+			int tile = searchQueue[head++];
+			int tileCol = minCol + (tile % width);
+			int tileRow = minRow + (tile / width);
+			boolean found = (unexplored) ? isNextToUnexplored(tileCol, tileRow) : targets[tile];
+			//The bot's own tile is never a target as there would be no movement to make
+			if ((found) && (tile != start))
+			{
+				return buildPath(tile);
+			}
+
+			for (int direction = 0; direction < 4; direction++)
+			{
+				int nextCol = tileCol + COL_OFFSETS[direction];
+				int nextRow = tileRow + ROW_OFFSETS[direction];
+				if (!contains(nextCol, nextRow))
+				{
+					continue;
+				}
+				int next = indexOf(nextCol, nextRow);
+				if ((reachedFrom[next] == -1) && (isSet(walkable, next)))
+				{
+					reachedFrom[next] = tile;
+					searchQueue[tail++] = next;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param tileCol int the column of the tile
+	 * @param tileRow int the row of the tile
+	 * @return boolean true if any of the tiles one movement away has not been seen
+	 */
+	private boolean isNextToUnexplored(int tileCol, int tileRow)
+	{
+		for (int direction = 0; direction < 4; direction++)
+		{
+			int nextCol = tileCol + COL_OFFSETS[direction];
+			int nextRow = tileRow + ROW_OFFSETS[direction];
+			if ((!contains(nextCol, nextRow)) || (!isSet(explored, indexOf(nextCol, nextRow))))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Follows the tiles recorded by the last search back from where it ended to the bot
+	 * @param end int the index of the tile the path ends on
+	 * @return ArrayList<CompassDirection> the movements from the bot to the end of the path, in order
+	 */
+	private ArrayList<CompassDirection> buildPath(int end)
+	{
+		ArrayList<CompassDirection> path = new ArrayList<CompassDirection>();
+		int tile = end;
+		while (reachedFrom[tile] != tile)
+		{
+			int previous = reachedFrom[tile];
+			int difference = tile - previous;
+			if (difference == -width)
+			{
+				path.add(CompassDirection.NORTH);
+			}
+			else if (difference == width)
+			{
+				path.add(CompassDirection.SOUTH);
+			}
+			else if (difference == 1)
+			{
+				path.add(CompassDirection.EAST);
+			}
+			else
+			{
+				path.add(CompassDirection.WEST);
+			}
+			tile = previous;
+		}
+		//The path was built from the end backwards
+		Collections.reverse(path);
+		return path;
+	}
+
+	/**
+	 * Grows the stored area so it covers a rectangle, with room to spare so it doesn't need to grow every move
+	 * @param left int the leftmost column
+	 * @param top int the top row
+	 * @param right int the rightmost column
+	 * @param bottom int the bottom row
+	 */
+	private void ensureCovers(int left, int top, int right, int bottom)
+	{
+		if ((contains(left, top)) && (contains(right, bottom)))
+		{
+			return;
+		}
+		int newMinCol = Math.min(minCol, left - GROWTH);
+		int newMinRow = Math.min(minRow, top - GROWTH);
+		int newWidth = Math.max(minCol + width, right + GROWTH + 1) - newMinCol;
+		int newHeight = Math.max(minRow + height, bottom + GROWTH + 1) - newMinRow;
+		long[] newExplored = new long[wordsFor(newWidth * newHeight)];
+		long[] newWalkable = new long[wordsFor(newWidth * newHeight)];
+		//Copies each tile across to where it is in the larger area
+		for (int oldRow = 0; oldRow < height; oldRow++)
+		{
+			for (int oldCol = 0; oldCol < width; oldCol++)
+			{
+				int oldIndex = (oldRow * width) + oldCol;
+				int newIndex = ((oldRow + minRow - newMinRow) * newWidth) + (oldCol + minCol - newMinCol);
+				set(newExplored, newIndex, isSet(explored, oldIndex));
+				set(newWalkable, newIndex, isSet(walkable, oldIndex));
+			}
+		}
+		this.minCol = newMinCol;
+		this.minRow = newMinRow;
+		this.width = newWidth;
+		this.height = newHeight;
+		this.explored = newExplored;
+		this.walkable = newWalkable;
+	}
+
+	/**
+	 * Records that another player was seen on a tile
+	 * @param key long the position of the tile
+	 */
+	private void addOccupied(long key)
+	{
+		if (occupiedCount == occupied.length)
+		{
+			occupied = Arrays.copyOf(occupied, occupiedCount * 2);
+		}
+		occupied[occupiedCount++] = key;
+	}
+
+	/**
+	 * @param tileCol int the column
+	 * @param tileRow int the row
+	 * @return boolean true if the position is in the stored area
+	 */
+	private boolean contains(int tileCol, int tileRow)
+	{
+		return (tileCol >= minCol) && (tileRow >= minRow) && (tileCol < minCol + width) && (tileRow < minRow + height);
+	}
+
+	/**
+	 * @param tileCol int the column, which must be in the stored area
+	 * @param tileRow int the row, which must be in the stored area
+	 * @return int the index of the tile's bit
+	 */
+	private int indexOf(int tileCol, int tileRow)
+	{
+		return ((tileRow - minRow) * width) + (tileCol - minCol);
+	}
+
+	/**
+	 * @param tile char a tile character
+	 * @return boolean true if it is another player
+	 */
+	private static boolean isPlayer(char tile)
+	{
+		return ((tile == 'P') || (tile == 'Q') || (tile == 'R') || (tile == 'K'));
+	}
+
+	/**
+	 * @param tileCol int the column
+	 * @param tileRow int the row
+	 * @return long the position packed into a single number, which doesn't change when the stored area grows
+	 */
+	private static long key(int tileCol, int tileRow)
+	{
+		return (((long) tileCol) << 32) | (tileRow & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * @param key long a packed position
+	 * @return int the column
+	 */
+	private static int keyCol(long key)
+	{
+		return (int) (key >> 32);
+	}
+
+	/**
+	 * @param key long a packed position
+	 * @return int the row
+	 */
+	private static int keyRow(long key)
+	{
+		return (int) key;
+	}
+
+	/**
+	 * @param bits int the number of bits
+	 * @return int the number of longs needed to store them
+	 */
+	private static int wordsFor(int bits)
+	{
+		return (bits + 63) >>> 6;
+	}
+
+	/**
+	 * @param words long[] the bits
+	 * @param index int the index of the bit
+	 * @return boolean true if the bit is set
+	 */
+	private static boolean isSet(long[] words, int index)
+	{
+		return ((words[index >>> 6] >>> index) & 1L) != 0;
+	}
+
+	/**
+	 * @param words long[] the bits
+	 * @param index int the index of the bit
+	 * @param value boolean the value of the bit
+	 */
+	private static void set(long[] words, int index, boolean value)
+	{
+		if (value)
+		{
+			words[index >>> 6] |= (1L << index);
+		}
+		else
+		{
+			words[index >>> 6] &= ~(1L << index);
+		}
+	}
+}
@@ -6,11 +6,15 @@ import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 
+import dod.ExecutionMode;
 import dod.GUI.ClientListener;
 
 /**
  * A GameCommunicator that provides functionality for communicating to a server game over a network
+ * After saying hello it asks the server to send only the changed rows of each look (LOOKDELTA),
+ * the full look is rebuilt here so the client listener always receives complete look replies.
  * @author Benjamin Dring
  */
 public class NetworkGameCommunicator extends GameCommunicator {
@@ -19,6 +23,10 @@ public class NetworkGameCommunicator extends GameCommunicator {
 	//These two objects are used in constructing the look reply
 	private String lookReply;
 	private boolean readingLookReply;
+	//These are used to apply look deltas to the last look
+	private ArrayList<String> lookRows; //The rows of the last look
+	private boolean readingLookDelta;
+	private boolean capabilityRequested; //Indicates look deltas have been asked for
 	
 	/**
 	 * The constructor for the class, it sets up the connection to the Network User over the network
@@ -34,22 +42,24 @@ public class NetworkGameCommunicator extends GameCommunicator {
 		//Set defaults
 		this.lookReply = "";
 		this.readingLookReply = false;
+		this.lookRows = new ArrayList<String>();
+		this.readingLookDelta = false;
+		this.capabilityRequested = false;
 	}
 	
 	@Override
 	public void addListener(ClientListener client){
 		//First it adds the listener using the superclass version of this function
 		super.addListener(client);
-		//Then is creates starts a new thread that listens for input through the socket
-		Thread thread = new Thread(new Runnable(){
+		//Then it starts a task that listens for input through the socket using the default execution mode
+		ExecutionMode.getDefault().execute(new Runnable(){
 			@Override
 			public void run()
 			{
-				//Thread code is a single function
+				//Task code is a single function
 				getMessageFromGame();
 			}
 		});
-		thread.start();
 	}
 
 	@Override
@@ -63,6 +73,12 @@ public class NetworkGameCommunicator extends GameCommunicator {
 				socketPrinter = new PrintWriter(server.getOutputStream(), true);
 			}
 			socketPrinter.println(message);
+			//Capabilities can only be asked for once the player has said hello
+			if ((!capabilityRequested) && (message.toUpperCase().startsWith("HELLO")))
+			{
+				capabilityRequested = true;
+				socketPrinter.println("CAPABILITY LOOKDELTA");
+			}
 		}
 		catch (IOException e)
 		{
@@ -100,6 +116,7 @@ public class NetworkGameCommunicator extends GameCommunicator {
 					//We then start the look reply
 					readingLookReply = true;
 					lookReply = message;
+					lookRows.clear();
 				}
 				else if (message.startsWith("ENDLOOKREPLY"))
 				{
@@ -112,6 +129,27 @@ public class NetworkGameCommunicator extends GameCommunicator {
 				{
 					//If we are still reading a look reply add it to the string
 					addToLookReply(message);
+					lookRows.add(message);
+				}
+				else if (message.startsWith("LOOKDELTA"))
+				{
+					//Changed rows follow, the rest of the look is the same as the last one
+					readingLookDelta = true;
+				}
+				else if (message.startsWith("ENDLOOKDELTA"))
+				{
+					//The full look is rebuilt so the client can't tell it was sent as a delta
+					readingLookDelta = false;
+					client.pushMessage(buildLookReply());
+				}
+				else if (readingLookDelta)
+				{
+					applyLookDelta(message);
+				}
+				else if (message.startsWith("CAPABILITY LOOKDELTA"))
+				{
+					//The server has agreed to look deltas, the client doesn't need to know
+					continue;
 				}
 				else
 				{
@@ -126,6 +164,39 @@ public class NetworkGameCommunicator extends GameCommunicator {
 		
 	}
 	
+	/**
+	 * Replaces a row of the last look with the row given by the server
+	 * @param message String the index of the row followed by a space and the new row
+	 */
+	private void applyLookDelta(String message)
+	{
+		int separator = message.indexOf(' ');
+		try
+		{
+			int row = Integer.parseInt(message.substring(0, separator));
+			lookRows.set(row, message.substring(separator + 1));
+		}
+		catch (RuntimeException e)
+		{
+			//A malformed row can't be applied so it is ignored, the next full look will correct it
+		}
+	}
+	
+	/**
+	 * Builds a complete look reply from the rows of the last look
+	 * @return String the look reply in the same form as one sent in full
+	 */
+	private String buildLookReply()
+	{
+		lookReply = "LOOKREPLY";
+		for (String row : lookRows)
+		{
+			addToLookReply(row);
+		}
+		addToLookReply("ENDLOOKREPLY");
+		return lookReply;
+	}
+	
 	/**
 	 * Adds a message as a new line to the look reply
 	 * @param message String the message to be added
@@ -0,0 +1,152 @@
+package dod;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The ways in which the long running tasks of the program (connections, bots and readers) can be run.
+ * Every mode supplies a shared executor so the rest of the program doesn't need to know which kind of thread it is given.
+ * The default mode can be chosen with the system property dod.threads (platform or virtual).
+ * @author Benjamin Dring
+ */
+public enum ExecutionMode {
+	/**
+	 * Every task is given its own operating system thread
+	 */
+	PLATFORM,
+	/**
+	 * Every task is given its own virtual thread, blocking on these is cheap so thousands can be run at once
+	 */
+	VIRTUAL;
+
+	private static ExecutionMode defaultMode = fromString(System.getProperty("dod.threads", "platform"));
+
+	private ExecutorService executor; //Created the first time it is needed
+
+	/**
+	 * Gets the executor used to run tasks in this mode
+	 * @return ExecutorService the shared executor of this mode
+	 */
+	public synchronized ExecutorService getExecutor()
+	{
+		if (executor == null)
+		{
+			if (this == VIRTUAL)
+			{
+				executor = createVirtualThreadExecutor();
+			}
+			else
+			{
+				executor = createPlatformThreadExecutor();
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * Runs a task using this mode
+	 * @param task Runnable the task to be run
+	 */
+	public void execute(Runnable task)
+	{
+		getExecutor().execute(task);
+	}
+
+	/**
+	 * Checks if this mode can actually be used by the running Java version
+	 * @return boolean true if the mode is supported, unsupported modes fall back to platform threads
+	 */
+	public boolean isSupported()
+	{
+		return (this == PLATFORM) || (getVirtualThreadFactoryMethod() != null);
+	}
+
+	/**
+	 * @return ExecutionMode the mode that the program uses unless told otherwise
+	 */
+	public static synchronized ExecutionMode getDefault()
+	{
+		return defaultMode;
+	}
+
+	/**
+	 * Changes the mode that the program uses, this should be done before anything is started
+	 * @param mode ExecutionMode the new default
+	 */
+	public static synchronized void setDefault(ExecutionMode mode)
+	{
+		defaultMode = mode;
+	}
+
+	/**
+	 * Converts a string to a mode, anything unrecognised is taken to be platform
+	 * @param string String the name of the mode
+	 * @return ExecutionMode the matching mode
+	 */
+	public static ExecutionMode fromString(String string)
+	{
+		if ((string != null) && (string.trim().equalsIgnoreCase("virtual")))
+		{
+			return VIRTUAL;
+		}
+		return PLATFORM;
+	}
+
+	/**
+	 * Creates an executor that gives every task a new virtual thread
+	 * Reflection is used so that the program still runs on versions of Java without virtual threads
+	 * @return ExecutorService the executor, a platform one is returned if virtual threads are not supported
+	 */
+	private static ExecutorService createVirtualThreadExecutor()
+	{
+		Method factoryMethod = getVirtualThreadFactoryMethod();
+		if (factoryMethod != null)
+		{
+			try
+			{
+				return (ExecutorService) factoryMethod.invoke(null);
+			}
+			catch (Exception e)
+			{
+				//Falls through to platform threads
+			}
+		}
+		System.out.println("Virtual threads are not supported by this version of Java - using platform threads");
+		return createPlatformThreadExecutor();
+	}
+
+	/**
+	 * Creates an executor that gives every task an operating system thread, idle threads are reused
+	 * @return ExecutorService the executor
+	 */
+	private static ExecutorService createPlatformThreadExecutor()
+	{
+		return Executors.newCachedThreadPool(new ThreadFactory(){
+			@Override
+			public Thread newThread(Runnable task)
+			{
+				Thread thread = new Thread(task);
+				//These threads should not keep the program alive on their own
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * @return Method Executors.newVirtualThreadPerTaskExecutor() or null if it doesn't exist
+	 */
+	private static Method getVirtualThreadFactoryMethod()
+	{
+		try
+		{
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		}
+		catch (NoSuchMethodException e)
+		{
+			return null;
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package dod.GUI;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.swing.ImageIcon;
+
+/**
+ * Loads the GUI's images, each image is only read once and then shared by every window that uses it
+ * @author Benjamin Dring
+ */
+public class ImageCache {
+	private static final Map<String, ImageIcon> icons = new HashMap<String, ImageIcon>();
+
+	/**
+	 * Gets the icon of an image file stored alongside the GUI classes
+	 * @param imageFileName String the image file name
+	 * @return ImageIcon the icon, it is shared so it must not be changed
+	 */
+	public static synchronized ImageIcon getIcon(String imageFileName)
+	{
+		ImageIcon icon = icons.get(imageFileName);
+		if (icon == null)
+		{
+			//Image is taken from file the first time it is needed
+			icon = new ImageIcon(ImageCache.class.getResource(imageFileName), "");
+			icons.put(imageFileName, icon);
+		}
+		return icon;
+	}
+}
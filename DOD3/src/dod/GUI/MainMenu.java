@@ -155,7 +155,7 @@ public class MainMenu extends JFrame {
 					//Bot Selection Menu is displayed
 					displayBotSelectionMenu(new LocalGameCommunicator(game), nameTextField.getText(), false); //Name is taken from the text field
 					//Game is started
-					game.startGame();
+					startGame(game);
 				//Catch statements send error message using JOptionPanes, they are located here so the user may enter in the details again
 				} catch (FileNotFoundException e) {
 					JOptionPane.showMessageDialog(null, "Map File not Found");
@@ -179,7 +179,7 @@ public class MainMenu extends JFrame {
 					//GUI is displayed
 					displayGameGUI(new HumanPlayerGUI(new LocalGameCommunicator(game), nameTextField.getText(), true)); //Name is taken from the text field
 					//Game is started
-					game.startGame();
+					startGame(game);
 				//Catch statements send error message using JOptionPanes, they are located here so the user may enter in the details again
 				} catch (FileNotFoundException e) {
 					JOptionPane.showMessageDialog(null, "Map File not Found");
@@ -630,6 +630,21 @@ public class MainMenu extends JFrame {
 		return game;
 	}
 	
+	/**
+	 * Starts a game on its command queue
+	 * @param game GameLogic The game to be started
+	 */
+	private void startGame(final GameLogic game)
+	{
+		game.submit(new Runnable(){
+			@Override
+			public void run()
+			{
+				game.startGame();
+			}
+		});
+	}
+	
 	/**
 	 * Converts a string to an int
 	 * @param portString The String that represents the port number
@@ -3,11 +3,18 @@ package dod.GUI;
 import java.awt.Container;
 import java.awt.Dimension;
 import java.awt.GridBagConstraints;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
 
 import javax.swing.JFrame;
+import javax.swing.JList;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
-import javax.swing.JTextArea;
+import javax.swing.ToolTipManager;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
 
 /**
  * Represents a generic abstract GUI which supplies some common GUI functions including a message feed
@@ -19,23 +26,44 @@ public abstract class MessageFeedGUI extends JFrame implements ClientListener{
 	
 	protected Container canvas;
 	private JPanel messageFeed; //The message feed JPanel
-	private JTextArea messageFeedText; //The TextArea contained in the JPanel
+	private final MessageFeedModel messages; //The newest messages
+	private JList<String> messageFeedList; //The list of messages contained in the JPanel
 	private GridBagConstraints gbc; //Attributed Constraints
 	
 	/**
 	 * The constructor of the class that sets up the Container and the messageFeed
 	 */
 	public MessageFeedGUI()
+	{
+		this(null);
+	}
+	
+	/**
+	 * The constructor of the class that sets up the Container and the messageFeed
+	 * @param logFile File where every message is also written, null if they are not
+	 */
+	public MessageFeedGUI(File logFile)
 	{
 		messageFeed = new JPanel();
+		messages = new MessageFeedModel(MessageFeedModel.DEFAULT_CAPACITY, logFile);
 		
-		//Making the Text Area Scrollable by using a JPanel containg a scrollpane around a JTextArea
-		messageFeedText = new JTextArea("");
-		messageFeedText.setEditable(false);
-		messageFeedText.setLineWrap(true);
-		messageFeedText.setWrapStyleWord(true);
+		//Making the list scrollable by using a JPanel containg a scrollpane around a JList
+		//Every row is the same height so only the rows in view are ever measured or drawn
+		messageFeedList = new JList<String>(messages){
+			private static final long serialVersionUID = 2126471427417788510L;
+
+			//Long messages are cut off in the list so the whole message is shown when the mouse is over it
+			@Override
+			public String getToolTipText(MouseEvent event) {
+				int index = locationToIndex(event.getPoint());
+				return (index < 0) ? null : getModel().getElementAt(index);
+			}
+		};
+		ToolTipManager.sharedInstance().registerComponent(messageFeedList);
+		messageFeedList.setPrototypeCellValue("Server: A message of a typical length");
+		messageFeedList.setFixedCellWidth(380);
 		
-		JScrollPane scrollFeed = new JScrollPane(messageFeedText, JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED,
+		JScrollPane scrollFeed = new JScrollPane(messageFeedList, JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED,
 				JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
 		
 		//prefered size is set
@@ -45,26 +73,36 @@ public abstract class MessageFeedGUI extends JFrame implements ClientListener{
 		messageFeed.add(scrollFeed);
 		messageFeed.setOpaque(false);
 		
+		//Set scroll to the bottom whenever messages arrive so new messages can be read
+		messages.addListDataListener(new ListDataListener(){
+			@Override
+			public void intervalAdded(ListDataEvent e) {
+				messageFeedList.ensureIndexIsVisible(e.getIndex1());
+			}
+			@Override
+			public void intervalRemoved(ListDataEvent e) {}
+			@Override
+			public void contentsChanged(ListDataEvent e) {}
+		});
+		
+		//The log is closed with the window
+		addWindowListener(new WindowAdapter(){
+			@Override
+			public void windowClosed(WindowEvent e) {
+				messages.closeLog();
+			}
+		});
+		
 		canvas = getContentPane();
 	}
 	
 	/**
-	 * Adds a given message to the message feed
+	 * Adds a given message to the message feed, this can be called from any thread
 	 * @param message the message to be displayed
 	 */
 	public void addMessageToFeed(String message)
 	{
-		if (!messageFeedText.getText().equals(""))
-		{
-			//Adds two new lines and then the message
-			messageFeedText.append("\n\n" + message);
-		}
-		else
-		{
-			messageFeedText.append(message);
-		}
-		//Set scroll to the bottom so new messages can be read
-		messageFeedText.setCaretPosition(messageFeedText.getDocument().getLength());
+		messages.add(message);
 	}
 	
 	/**
@@ -86,7 +124,7 @@ public abstract class MessageFeedGUI extends JFrame implements ClientListener{
 	 */
 	@Override
 	public void restartGame() {
-		messageFeedText.setText("");
+		messages.clear();
 		addMessageToFeed("Game Reset");
 	}
 	
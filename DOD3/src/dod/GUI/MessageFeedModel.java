@@ -0,0 +1,299 @@
+package dod.GUI;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.AbstractListModel;
+import javax.swing.SwingUtilities;
+
+import dod.ExecutionMode;
+import dod.game.CommandQueue;
+
+/**
+ * The messages shown in a message feed, only the newest are kept so a feed that runs for a long time uses the same memory throughout.
+ * They are held in a ring buffer of a fixed size, once it is full each new message replaces the oldest.
+ * Messages can be added from any thread, they are gathered up and handed to the event dispatch thread in batches
+ * so a busy game doesn't swamp it with an update for every message.
+ * Optionally every message is also written to a log file, which is rolled over once it gets too large, so nothing is lost.
+ * The log is written away from the event dispatch thread so a slow disk doesn't hold up the window.
+ * @author Benjamin Dring
+ */
+public class MessageFeedModel extends AbstractListModel<String> {
+	private static final long serialVersionUID = -6418205093735126618L;
+
+	//The default number of messages kept, set with the system property dod.feed.capacity
+	public static final int DEFAULT_CAPACITY = Integer.getInteger("dod.feed.capacity", 1000);
+	//The size a log file can reach before it is rolled over, set with the system property dod.feed.logSize
+	private static final long MAX_LOG_SIZE = Long.getLong("dod.feed.logSize", 1 << 20);
+	private static final Charset LOG_CHARSET = Charset.forName("UTF-8");
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+	//The ring buffer, only used on the event dispatch thread
+	private final String[] messages;
+	private int first; //The index of the oldest message
+	private int size; //The number of messages kept
+
+	//Messages waiting to be handed to the event dispatch thread, guarded by pending
+	private final List<String> pending;
+	private boolean clearRequested; //Indicates the feed is wiped before the pending messages are added, guarded by pending
+	private boolean updateScheduled; //Indicates the event dispatch thread will take the pending messages, guarded by pending
+
+	private final File logFile; //Where every message is written, null if they are not
+	private final CommandQueue logQueue; //Writes to the log one batch at a time in the order they were added, null if there is no log
+	private Writer log; //Only used by the log queue
+	private long logSize; //Only used by the log queue
+
+	/**
+	 * Creates a feed that isn't written to a log
+	 * @param capacity int the number of messages kept
+	 */
+	public MessageFeedModel(int capacity)
+	{
+		this(capacity, null);
+	}
+
+	/**
+	 * Creates a feed
+	 * @param capacity int the number of messages kept
+	 * @param logFile File where every message is written, when it is full it is moved to the same name ending in .1, null for no log
+	 */
+	public MessageFeedModel(int capacity, File logFile)
+	{
+		this.messages = new String[Math.max(1, capacity)];
+		this.first = 0;
+		this.size = 0;
+		this.pending = new ArrayList<String>();
+		this.clearRequested = false;
+		this.updateScheduled = false;
+		this.logFile = logFile;
+		this.logQueue = (logFile == null) ? null : new CommandQueue(ExecutionMode.getDefault().getExecutor());
+		this.log = null;
+		this.logSize = 0;
+	}
+
+	/**
+	 * Adds a message to the end of the feed, this can be called from any thread
+	 * @param message String the message to be added
+	 */
+	public void add(String message)
+	{
+		synchronized (pending)
+		{
+			pending.add(message);
+			scheduleUpdate();
+		}
+	}
+
+	/**
+	 * Wipes the feed, messages added after this are still shown, this can be called from any thread.
+	 * Messages that were never shown are still written to the log.
+	 */
+	public void clear()
+	{
+		synchronized (pending)
+		{
+			if (!pending.isEmpty())
+			{
+				logBatch(pending.toArray(new String[pending.size()]));
+				pending.clear();
+			}
+			clearRequested = true;
+			scheduleUpdate();
+		}
+	}
+
+	@Override
+	public int getSize()
+	{
+		return size;
+	}
+
+	@Override
+	public String getElementAt(int index)
+	{
+		return messages[(first + index) % messages.length];
+	}
+
+	/**
+	 * Makes sure the event dispatch thread will take the pending messages, the pending lock must be held
+	 */
+	private void scheduleUpdate()
+	{
+		if (!updateScheduled)
+		{
+			updateScheduled = true;
+			SwingUtilities.invokeLater(new Runnable(){
+				@Override
+				public void run() {
+					applyPending();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Adds the pending messages to the ring buffer and tells the list showing it what changed, run on the event dispatch thread
+	 */
+	private void applyPending()
+	{
+		String[] batch;
+		boolean clearing;
+		synchronized (pending)
+		{
+			batch = pending.toArray(new String[pending.size()]);
+			pending.clear();
+			if (batch.length > 0)
+			{
+				logBatch(batch);
+			}
+			clearing = clearRequested;
+			clearRequested = false;
+			updateScheduled = false;
+		}
+
+		if ((clearing) && (size > 0))
+		{
+			int removed = size;
+			first = 0;
+			size = 0;
+			Arrays.fill(messages, null);
+			fireIntervalRemoved(this, 0, removed - 1);
+		}
+		if (batch.length == 0)
+		{
+			return;
+		}
+
+		//Only the newest messages of a large batch would survive so the rest are skipped
+		int start = Math.max(0, batch.length - messages.length);
+		int added = batch.length - start;
+		int evicted = Math.max(0, size + added - messages.length);
+		for (int index = start; index < batch.length; index++)
+		{
+			if (size < messages.length)
+			{
+				messages[(first + size) % messages.length] = batch[index];
+				size++;
+			}
+			else
+			{
+				//The oldest message is replaced
+				messages[first] = batch[index];
+				first = (first + 1) % messages.length;
+			}
+		}
+		if (evicted > 0)
+		{
+			fireIntervalRemoved(this, 0, evicted - 1);
+		}
+		fireIntervalAdded(this, size - added, size - 1);
+	}
+
+	/**
+	 * Hands a batch of messages to the log queue to be written if there is a log, the pending lock must be held
+	 * so that batches are written in the order they were added
+	 * @param batch String[] the messages to be written
+	 */
+	private void logBatch(final String[] batch)
+	{
+		if (logQueue != null)
+		{
+			logQueue.execute(new Runnable(){
+				@Override
+				public void run() {
+					writeToLog(batch);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Writes a batch of messages to the log, the log is rolled over if it has become too large, this is run by the log queue.
+	 * If the log can't be written to the error is reported and the feed keeps working, the log is opened again for the next batch.
+	 * @param batch String[] the messages to be written
+	 */
+	private void writeToLog(String[] batch)
+	{
+		try
+		{
+			if (log == null)
+			{
+				openLog();
+			}
+			for (String message : batch)
+			{
+				if (logSize >= MAX_LOG_SIZE)
+				{
+					//The full log is kept under a different name and a new one is started
+					log.close();
+					File rolled = new File(logFile.getPath() + ".1");
+					rolled.delete();
+					logFile.renameTo(rolled);
+					openLog();
+				}
+				String line = message + LINE_SEPARATOR;
+				log.write(line);
+				logSize += line.length();
+			}
+			log.flush();
+		}
+		catch (IOException e)
+		{
+			System.err.println("Message feed log could not be written: " + e.getMessage());
+			closeLogFile();
+		}
+	}
+
+	/**
+	 * Opens the log file, adding to it if it already exists
+	 * @throws IOException if the file can't be opened
+	 */
+	private void openLog() throws IOException
+	{
+		log = new OutputStreamWriter(new FileOutputStream(logFile, true), LOG_CHARSET);
+		logSize = logFile.length();
+	}
+
+	/**
+	 * Closes the log file once the messages already handed to it are written, this can be called from any thread.
+	 * It is opened again if any more messages arrive.
+	 */
+	public void closeLog()
+	{
+		if (logQueue != null)
+		{
+			logQueue.execute(new Runnable(){
+				@Override
+				public void run() {
+					closeLogFile();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Closes the log file if it is open, this is run by the log queue
+	 */
+	private void closeLogFile()
+	{
+		if (log != null)
+		{
+			try
+			{
+				log.close();
+			}
+			catch (IOException e)
+			{
+				//Nothing more can be done with it
+			}
+			log = null;
+		}
+	}
+}
@@ -5,12 +5,12 @@ import java.awt.GridBagLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 
-import javax.swing.ImageIcon;
 import javax.swing.JButton;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
 
 import dod.Communicator.GameCommunicator;
 import dod.game.Location;
@@ -22,7 +22,7 @@ public abstract class PlayerGUI extends MessageFeedGUI{
 	private static final long serialVersionUID = 4902461275568435021L;
 	
 	private JTextField chatField; //The Text field for talking
-	protected JPanel gameBoard;
+	protected TileBoard gameBoard;
 	protected GameCommunicator gameCommunicator; //The communicator for communication to the game
 	private String[] lookReply; //Stores the look reply
 	private int currentGold;
@@ -53,7 +53,7 @@ public abstract class PlayerGUI extends MessageFeedGUI{
 		//Using the nature of event driven commands in swing in the human GUI
 		this.gameCommunicator.addListener(this); 
 		this.setTitle("Dungeon of Dooom");
-		this.gameBoard = new JPanel();
+		this.gameBoard = new TileBoard();
 		this.currentGold = 0;
 		this.name = name;
 		this.hasArmour = false;
@@ -65,9 +65,6 @@ public abstract class PlayerGUI extends MessageFeedGUI{
 		//Uses sword indicator image but starts out invisible
 		this.swordLabel = getImageLabel("SwordIndicator.png");
 		this.swordLabel.setVisible(false);
-		
-		//Gridbag layout is used for gameboard
-		gameBoard.setLayout(new GridBagLayout());
 	}
 	
 	/**
@@ -84,38 +81,23 @@ public abstract class PlayerGUI extends MessageFeedGUI{
 	 */
 	private void updateGameBoard()
 	{
-		//Removes all components from the game Board
-		this.gameBoard.removeAll();
-		GridBagConstraints gbc = new GridBagConstraints();
 		//Gets the player location
 		Location playerLocation = getPlayerLocation();
 		
-		//Loop through every character in the look reply
+		//The header and trailer of the look reply are not part of the board
+		char[][] tiles = new char[lookReply.length - 2][];
 		for(int y = 1; y < lookReply.length - 1; y++)
 		{
-			gbc.gridy = y;
 			char[] row = lookReply[y].toCharArray(); //String is taken to a char array
-			for(int x = 0; x < row.length; x++)
+			if (y == playerLocation.getRow())
 			{
-				gbc.gridx = x;
-				JLabel tile;
-				if ((x == playerLocation.getCol()) && (y == playerLocation.getRow()))
-				{
-					//Puts a player in the centre
-					tile = getMatchingLabel(getPlayerCharacter(row[x]));
-				}
-				else
-				{
-					//If there is no player than get the picture matching the character
-					tile = getMatchingLabel(row[x]);
-				}
-				//tile is added
-				gameBoard.add(tile, gbc);
+				//Puts a player in the centre
+				row[playerLocation.getCol()] = getPlayerCharacter(row[playerLocation.getCol()]);
 			}
+			tiles[y - 1] = row;
 		}
-		//Force an update to visibility
-		gameBoard.setVisible(false);
-		gameBoard.setVisible(true);
+		//The board only repaints the tiles that have changed
+		gameBoard.setTiles(tiles);
 	}
 	
 	/**
@@ -270,9 +252,8 @@ public abstract class PlayerGUI extends MessageFeedGUI{
 	 */
 	protected void setImageButton(String imageFileName, JButton button)
 	{
-		//Image is taken from file
-		ImageIcon imageIcon = new ImageIcon(getClass().getResource(imageFileName), "");
-		button.setIcon(imageIcon);
+		//Image is taken from the cache so it is only read from file once
+		button.setIcon(ImageCache.getIcon(imageFileName));
 	}
 	
 	/**
@@ -283,15 +264,32 @@ public abstract class PlayerGUI extends MessageFeedGUI{
 	protected JLabel getImageLabel(String imageFileName)
 	{
 		JLabel label = new JLabel();
-		//Image is taken from file
-		ImageIcon imageIcon = new ImageIcon(getClass().getResource(imageFileName), "");
-		label.setIcon(imageIcon);
+		//Image is taken from the cache so it is only read from file once
+		label.setIcon(ImageCache.getIcon(imageFileName));
 		return label;
 	}
 	
-	//Interprets the message from the game
+	/**
+	 * Passes a message from the game to the event dispatch thread to be interpreted.
+	 * Messages arrive on the game's thread or the network thread but change swing components,
+	 * they are always passed on so they are interpreted in the order they arrived.
+	 */
 	@Override
-	public void pushMessage(String message)
+	public void pushMessage(final String message)
+	{
+		SwingUtilities.invokeLater(new Runnable(){
+			@Override
+			public void run() {
+				interpretMessage(message);
+			}
+		});
+	}
+	
+	/**
+	 * Interprets the message from the game, this must be run on the event dispatch thread
+	 * @param message String the message from the game
+	 */
+	private void interpretMessage(String message)
 	{
 		//Die messages are treated differently
 		if (message.startsWith(("DIE")))
@@ -333,6 +331,11 @@ public abstract class PlayerGUI extends MessageFeedGUI{
 			
 			//Allows subclassses to read the message if it's needed
 			handelMessage(message);
+			//Replies that only tell a bot how its commands went are not shown
+			if ((message.equals("SUCCESS")) || (message.startsWith("CAPABILITY ")))
+			{
+				return;
+			}
 			//Checks to see if the message is a server of player message and formats it correctly
 			if (!message.startsWith("["))
 			{
@@ -399,84 +402,6 @@ public abstract class PlayerGUI extends MessageFeedGUI{
 		}
 	}
 	
-	/**
-	 * Given a character a JLabel with the matching image is returned
-	 * @param Tile char The Tile Character
-	 * @return JLabel with an image of the matching character, if the character is not recognised a black space is seen instead
-	 */
-	private JLabel getMatchingLabel(char Tile)
-	{
-		String fileName;
-		//Case statement for all file names
-		switch(Tile)
-		{
-		case '.':
-		{
-			fileName = "Floor";
-			break;
-		}
-		case 'G':
-		{
-			fileName = "Gold";
-			break;
-		}
-		case 'E':
-		{
-			fileName = "Exit";
-			break;
-		}
-		case '#':
-		{
-			fileName = "Wall";
-			break;
-		}
-		case 'A':
-		{
-			fileName = "Armour";
-			break;
-		}
-		case 'S':
-		{
-			fileName = "Sword";
-			break;
-		}
-		case 'H':
-		{
-			fileName = "Health";
-			break;
-		}
-		case 'P':
-		{
-			fileName = "Player";
-			break;
-		}
-		case 'Q':
-		{
-			fileName = "ExitPlayer";
-			break;
-		}
-		case 'R':
-		{
-			fileName = "aPlayer";
-			break;
-		}
-		case 'K':
-		{
-			fileName = "aExitPlayer";
-			break;
-		}
-		case 'L':
-		{
-			fileName = "Lantern";
-			break;
-		}
-		//Has a default one for X and any extra tiles that does not exist yet
-		default: fileName = "BlackSpace";
-		}
-		//File Extension is added and the JLabel is formed
-		return getImageLabel(fileName + ".png");
-	}
-	
 	/**
 	 * Sends a chat message to the game
 	 * @param message String the message to be sent
@@ -4,8 +4,10 @@ import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
 
 import javax.swing.JButton;
+import javax.swing.SwingUtilities;
 
 import dod.game.GameLogic;
 
@@ -23,11 +25,12 @@ public class ServerGUI extends MessageFeedGUI implements ActionListener{
 	private GameLogic game; //The given GameLogic object
 	
 	/**
-	 * The constructor for the class it sets up the GUI ready for display
+	 * The constructor for the class it sets up the GUI ready for display.
+	 * The feed only shows the newest messages, set the system property dod.server.log to a file name to keep every message in a log as well
 	 */
 	public ServerGUI()
 	{
-		super();
+		super(getLogFile());
 		serverButton = new JButton("");
 		//Action Listener is done by the class this time
 		serverButton.addActionListener(this);
@@ -35,6 +38,16 @@ public class ServerGUI extends MessageFeedGUI implements ActionListener{
 		setStartButtonAttributes();
 	}
 	
+	/**
+	 * Gets the file the server's messages are logged to
+	 * @return File the log file, null if the messages are not logged
+	 */
+	private static File getLogFile()
+	{
+		String fileName = System.getProperty("dod.server.log");
+		return (fileName == null) ? null : new File(fileName);
+	}
+	
 	/**
 	 * Adds a game logic to the class so the server can start the game
 	 * @param game GameLogic the GameLogic object to be started and stopped with the server buttons
@@ -82,7 +95,7 @@ public class ServerGUI extends MessageFeedGUI implements ActionListener{
 			//If there is no game yet then nothing happens
 			if (game != null)
 			{
-				game.startGame();
+				startGame();
 				//Button is updated
 				setStopButtonAttributes();
 				this.gameStarted = true;
@@ -92,6 +105,20 @@ public class ServerGUI extends MessageFeedGUI implements ActionListener{
 		}
 	}
 	
+	/**
+	 * Starts the game on its command queue
+	 */
+	private void startGame()
+	{
+		game.submit(new Runnable(){
+			@Override
+			public void run()
+			{
+				game.startGame();
+			}
+		});
+	}
+	
 	/**
 	 * Sets the button up as a start button
 	 */
@@ -120,14 +147,19 @@ public class ServerGUI extends MessageFeedGUI implements ActionListener{
 
 	@Override
 	/**
-	 * Restarts the game
+	 * Restarts the game, this is called on the game's thread so the GUI is changed on the event dispatch thread
 	 */
 	public void restartGame() {
 		//Message feed functionality is handled by the super class version of this function
 		super.restartGame();
-		//ServerGUI state is corrected
-		setStartButtonAttributes();
-		this.gameStarted = false;
+		SwingUtilities.invokeLater(new Runnable(){
+			@Override
+			public void run() {
+				//ServerGUI state is corrected
+				setStartButtonAttributes();
+				gameStarted = false;
+			}
+		});
 	}
 
 }
@@ -0,0 +1,172 @@
+package dod.GUI;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.Rectangle;
+
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+
+/**
+ * Draws the game board from a grid of tile characters.
+ * The tile images are loaded once and the last grid drawn is kept, so when a new grid arrives only the tiles that
+ * have changed are painted again rather than the whole board being rebuilt.
+ * New grids can be given from any thread, if several arrive before the event dispatch thread gets to them only the newest is drawn.
+ * @author Benjamin Dring
+ */
+public class TileBoard extends JComponent {
+	private static final long serialVersionUID = -3061259532094513870L;
+
+	//Every tile image is the same size
+	private static final int TILE_SIZE = 100;
+	//The image for each tile character, tiles with no image of their own are drawn as black space
+	private static final Image[] tileImages = loadTileImages();
+	private static final Image blackSpace = ImageCache.getIcon("BlackSpace.png").getImage();
+
+	private char[][] tiles; //The grid that is drawn, only used on the event dispatch thread
+	private char[][] pendingTiles; //The newest grid that hasn't been drawn yet, guarded by this
+	private boolean updateScheduled; //Indicates the event dispatch thread will take the pending grid, guarded by this
+
+	/**
+	 * Creates an empty board
+	 */
+	public TileBoard()
+	{
+		this.tiles = new char[0][0];
+		this.pendingTiles = null;
+		this.updateScheduled = false;
+	}
+
+	/**
+	 * Sets the grid to be drawn
+	 * @param newTiles char[][] the tile characters indexed by row then column, it must not be changed afterwards
+	 */
+	public void setTiles(char[][] newTiles)
+	{
+		synchronized (this)
+		{
+			pendingTiles = newTiles;
+			if (updateScheduled)
+			{
+				//The update already waiting will draw this grid instead
+				return;
+			}
+			updateScheduled = true;
+		}
+		if (SwingUtilities.isEventDispatchThread())
+		{
+			applyPendingTiles();
+		}
+		else
+		{
+			SwingUtilities.invokeLater(new Runnable(){
+				@Override
+				public void run() {
+					applyPendingTiles();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Swaps in the newest grid and asks for the tiles that changed to be painted, this must be run on the event dispatch thread
+	 */
+	private void applyPendingTiles()
+	{
+		char[][] newTiles;
+		synchronized (this)
+		{
+			newTiles = pendingTiles;
+			pendingTiles = null;
+			updateScheduled = false;
+		}
+		char[][] oldTiles = this.tiles;
+		this.tiles = newTiles;
+
+		if ((oldTiles.length != newTiles.length) || ((newTiles.length > 0) && (oldTiles[0].length != newTiles[0].length)))
+		{
+			//The board has changed size such as when a lantern is picked up, so it is laid out and drawn again
+			revalidate();
+			repaint();
+			return;
+		}
+		for (int row = 0; row < newTiles.length; row++)
+		{
+			for (int col = 0; col < newTiles[row].length; col++)
+			{
+				if (oldTiles[row][col] != newTiles[row][col])
+				{
+					//Repaints are joined together by swing so this only paints the area around the changes
+					repaint(col * TILE_SIZE, row * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+				}
+			}
+		}
+	}
+
+	@Override
+	public Dimension getPreferredSize()
+	{
+		if (isPreferredSizeSet())
+		{
+			return super.getPreferredSize();
+		}
+		int rows = tiles.length;
+		int cols = (rows > 0) ? tiles[0].length : 0;
+		return new Dimension(cols * TILE_SIZE, rows * TILE_SIZE);
+	}
+
+	@Override
+	protected void paintComponent(Graphics g)
+	{
+		Rectangle clip = g.getClipBounds();
+		if (clip == null)
+		{
+			clip = new Rectangle(0, 0, getWidth(), getHeight());
+		}
+		//Only the tiles inside the area being painted are drawn
+		int firstRow = Math.max(0, clip.y / TILE_SIZE);
+		int lastRow = Math.min(tiles.length - 1, (clip.y + clip.height - 1) / TILE_SIZE);
+		for (int row = firstRow; row <= lastRow; row++)
+		{
+			int firstCol = Math.max(0, clip.x / TILE_SIZE);
+			int lastCol = Math.min(tiles[row].length - 1, (clip.x + clip.width - 1) / TILE_SIZE);
+			for (int col = firstCol; col <= lastCol; col++)
+			{
+				g.drawImage(getTileImage(tiles[row][col]), col * TILE_SIZE, row * TILE_SIZE, TILE_SIZE, TILE_SIZE, null);
+			}
+		}
+	}
+
+	/**
+	 * @param tile char a tile character
+	 * @return Image the image of the tile
+	 */
+	private static Image getTileImage(char tile)
+	{
+		Image image = (tile < tileImages.length) ? tileImages[tile] : null;
+		return (image == null) ? blackSpace : image;
+	}
+
+	/**
+	 * Loads the image of every tile character
+	 * @return Image[] the images indexed by tile character, X and any tiles that don't exist yet have no image
+	 */
+	private static Image[] loadTileImages()
+	{
+		Image[] images = new Image[128];
+		images['.'] = ImageCache.getIcon("Floor.png").getImage();
+		images['G'] = ImageCache.getIcon("Gold.png").getImage();
+		images['E'] = ImageCache.getIcon("Exit.png").getImage();
+		images['#'] = ImageCache.getIcon("Wall.png").getImage();
+		images['A'] = ImageCache.getIcon("Armour.png").getImage();
+		images['S'] = ImageCache.getIcon("Sword.png").getImage();
+		images['H'] = ImageCache.getIcon("Health.png").getImage();
+		images['P'] = ImageCache.getIcon("Player.png").getImage();
+		images['Q'] = ImageCache.getIcon("ExitPlayer.png").getImage();
+		images['R'] = ImageCache.getIcon("aPlayer.png").getImage();
+		images['K'] = ImageCache.getIcon("aExitPlayer.png").getImage();
+		images['L'] = ImageCache.getIcon("Lantern.png").getImage();
+		return images;
+	}
+}
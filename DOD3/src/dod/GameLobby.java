@@ -0,0 +1,207 @@
+package dod;
+
+import java.io.FileNotFoundException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dod.GUI.ClientListener;
+import dod.game.GameLogic;
+
+/**
+ * A collection of named games hosted by a single server, users can list the games and move between them.
+ * Games created by the lobby share a scheduler with one thread per processor, each game's commands are still run one at a time
+ * but many games can be played at once without each needing a thread of its own.
+ * Names are stored in upper case as that is how users' commands reach the game.
+ * @author Benjamin Dring
+ */
+public class GameLobby {
+	private final int schedulerThreadCount; //The number of threads shared by the games
+	private ExecutorService scheduler; //Created the first time the lobby creates a game
+	private final LinkedHashMap<String, GameLogic> games; //Games in the order they were added
+	private String defaultGameName; //New users join this game, it is the first game added
+
+	/**
+	 * Creates an empty lobby whose games share one thread for each processor
+	 */
+	public GameLobby()
+	{
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates an empty lobby
+	 * @param schedulerThreadCount int the number of threads shared by the games the lobby creates
+	 */
+	public GameLobby(int schedulerThreadCount)
+	{
+		this.schedulerThreadCount = Math.max(1, schedulerThreadCount);
+		this.games = new LinkedHashMap<String, GameLogic>();
+		this.defaultGameName = null;
+	}
+
+	/**
+	 * Creates a lobby holding a single existing game
+	 * @param name String the name of the game
+	 * @param game GameLogic the game
+	 */
+	public GameLobby(String name, GameLogic game)
+	{
+		this();
+		addGame(name, game);
+	}
+
+	/**
+	 * Adds an existing game to the lobby, it is up to the caller to start the game
+	 * @param name String the name of the game, it can't contain spaces
+	 * @param game GameLogic the game
+	 */
+	public synchronized void addGame(String name, GameLogic game)
+	{
+		String key = toKey(name);
+		if (games.containsKey(key))
+		{
+			throw new IllegalArgumentException("There is already a game called " + key);
+		}
+		games.put(key, game);
+		if (defaultGameName == null)
+		{
+			defaultGameName = key;
+		}
+	}
+
+	/**
+	 * Creates a new game run by the lobby's scheduler and starts it so players can act as soon as they join.
+	 * When everyone in the game has died the game is set up again with a fresh map and started,
+	 * its users must join it again to play.
+	 * @param name String the name of the game, it can't contain spaces
+	 * @param mapFile String the name of the file to load the map from
+	 * @return GameLogic the new game
+	 * @throws FileNotFoundException
+	 * @throws ParseException
+	 */
+	public synchronized GameLogic createGame(String name, String mapFile) throws FileNotFoundException, ParseException
+	{
+		final LobbyGameListener listener = new LobbyGameListener(toKey(name));
+		final GameLogic game = new GameLogic(mapFile, listener, getScheduler());
+		listener.setGame(game);
+		addGame(name, game);
+		listener.restartGame();
+		return game;
+	}
+
+	/**
+	 * @param name String the name of the game, in any case
+	 * @return GameLogic the game with the given name, null if there isn't one
+	 */
+	public synchronized GameLogic getGame(String name)
+	{
+		return games.get(toKey(name));
+	}
+
+	/**
+	 * @return GameLogic the game new users join, null if the lobby is empty
+	 */
+	public synchronized GameLogic getDefaultGame()
+	{
+		return (defaultGameName == null) ? null : games.get(defaultGameName);
+	}
+
+	/**
+	 * @return List<String> the names of every game in the order they were added
+	 */
+	public synchronized List<String> getGameNames()
+	{
+		return new ArrayList<String>(games.keySet());
+	}
+
+	/**
+	 * Converts a game name to the form it is stored in
+	 * @param name String the name of the game
+	 * @return String the stored name
+	 */
+	private static String toKey(String name)
+	{
+		String key = name.trim().toUpperCase();
+		if ((key.equals("")) || (key.contains(" ")))
+		{
+			throw new IllegalArgumentException("Game names must be a single word");
+		}
+		return key;
+	}
+
+	/**
+	 * @return ExecutorService the threads shared by the games of this lobby
+	 */
+	private ExecutorService getScheduler()
+	{
+		if (scheduler == null)
+		{
+			final AtomicInteger threadNumber = new AtomicInteger(0);
+			scheduler = Executors.newFixedThreadPool(schedulerThreadCount, new ThreadFactory(){
+				@Override
+				public Thread newThread(Runnable task)
+				{
+					Thread thread = new Thread(task, "Game scheduler " + threadNumber.getAndIncrement());
+					//The scheduler shouldn't keep the program alive on its own
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return scheduler;
+	}
+
+	/**
+	 * Listens to a game created by the lobby, there is no one to press start so the game is started by the listener
+	 */
+	private static class LobbyGameListener implements ClientListener {
+		private final String name; //The name of the game, used to label its messages
+		private GameLogic game;
+
+		/**
+		 * @param name String the name of the game
+		 */
+		public LobbyGameListener(String name)
+		{
+			this.name = name;
+		}
+
+		/**
+		 * @param game GameLogic the game being listened to
+		 */
+		public void setGame(GameLogic game)
+		{
+			this.game = game;
+		}
+
+		/**
+		 * Messages are written to the console labelled with the game they came from
+		 */
+		@Override
+		public void pushMessage(String message)
+		{
+			System.out.println("[" + name + "] " + message);
+		}
+
+		/**
+		 * The game is started again straight away
+		 */
+		@Override
+		public void restartGame()
+		{
+			game.submit(new Runnable(){
+				@Override
+				public void run()
+				{
+					game.startGame();
+				}
+			});
+		}
+	}
+}
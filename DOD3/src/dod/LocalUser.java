@@ -29,9 +29,9 @@ public class LocalUser extends User {
 	}
 
 	@Override
-	protected void outputMessage(String message) {
+	protected void outputMessage(CharSequence message) {
 		//Simply calls a method from the local game communicator
-		localComm.sendMessageFromGame(message);
+		localComm.sendMessageFromGame(message.toString());
 	}
 
 }
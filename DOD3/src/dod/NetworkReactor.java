@@ -0,0 +1,179 @@
+package dod;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * An I/O thread that multiplexes many client connections over a single selector.
+ * The server hands accepted connections to a small number of these so that players no longer cost a thread each.
+ * @author Benjamin Dring
+ */
+public class NetworkReactor extends Thread {
+	private final Selector selector;
+	//Users waiting to be registered with the selector
+	private final ConcurrentLinkedQueue<NetworkUser> pendingRegistrations;
+	//Users with output waiting to be written
+	private final ConcurrentLinkedQueue<NetworkUser> pendingWrites;
+
+	/**
+	 * Sets up the reactor and opens its selector
+	 * @param name String the name of the I/O thread
+	 * @throws IOException if the selector can't be opened
+	 */
+	public NetworkReactor(String name) throws IOException {
+		super(name);
+		this.selector = Selector.open();
+		this.pendingRegistrations = new ConcurrentLinkedQueue<NetworkUser>();
+		this.pendingWrites = new ConcurrentLinkedQueue<NetworkUser>();
+		//I/O threads shouldn't keep the program alive on their own
+		setDaemon(true);
+	}
+
+	/**
+	 * Hands a connection to this reactor, it can be called from any thread
+	 * @param user NetworkUser the user owning the connection
+	 */
+	public void register(NetworkUser user)
+	{
+		pendingRegistrations.add(user);
+		selector.wakeup();
+	}
+
+	/**
+	 * Informs the reactor that a user has output waiting, it can be called from any thread
+	 * @param user NetworkUser the user with output
+	 */
+	public void requestWrite(NetworkUser user)
+	{
+		pendingWrites.add(user);
+		selector.wakeup();
+	}
+
+	/**
+	 * Waits for socket events and passes them on to the users until the thread is interrupted
+	 */
+	@Override
+	public void run()
+	{
+		try
+		{
+			while (!isInterrupted())
+			{
+				selector.select();
+				registerPendingUsers();
+				updateWriteInterest();
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext())
+				{
+					SelectionKey key = keys.next();
+					keys.remove();
+					handleKey(key);
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			//The selector itself has failed so nothing more can be done on this thread
+			System.out.println("Network thread " + getName() + " has failed");
+		}
+		finally
+		{
+			closeAll();
+		}
+	}
+
+	/**
+	 * Registers any newly accepted users with the selector
+	 */
+	private void registerPendingUsers()
+	{
+		NetworkUser user;
+		while ((user = pendingRegistrations.poll()) != null)
+		{
+			try
+			{
+				int interest = SelectionKey.OP_READ;
+				if (user.hasPendingOutput())
+				{
+					interest |= SelectionKey.OP_WRITE;
+				}
+				user.setSelectionKey(user.getChannel().register(selector, interest, user));
+			}
+			catch (ClosedChannelException e)
+			{
+				//The client went away before it was registered
+				user.disconnect();
+			}
+		}
+	}
+
+	/**
+	 * Adds write interest for every user that has output waiting
+	 */
+	private void updateWriteInterest()
+	{
+		NetworkUser user;
+		while ((user = pendingWrites.poll()) != null)
+		{
+			SelectionKey key = user.getSelectionKey();
+			if ((key != null) && (key.isValid()))
+			{
+				key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+			}
+		}
+	}
+
+	/**
+	 * Passes the events of a single key to its user
+	 * @param key SelectionKey the ready key
+	 */
+	private void handleKey(SelectionKey key)
+	{
+		NetworkUser user = (NetworkUser) key.attachment();
+		try
+		{
+			if (key.isReadable())
+			{
+				user.readFromChannel();
+			}
+			if (key.isValid() && key.isWritable())
+			{
+				if (user.writeToChannel() && key.isValid())
+				{
+					//Everything has been written so we stop waiting to write
+					key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+				}
+			}
+		}
+		catch (CancelledKeyException e)
+		{
+			user.disconnect();
+		}
+		catch (IOException e)
+		{
+			user.connectionLost();
+		}
+	}
+
+	/**
+	 * Closes every connection owned by this reactor
+	 */
+	private void closeAll()
+	{
+		for (SelectionKey key : selector.keys())
+		{
+			((NetworkUser) key.attachment()).disconnect();
+		}
+		try
+		{
+			selector.close();
+		}
+		catch (IOException e) {}
+	}
+}
@@ -1,118 +1,637 @@
 package dod;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import dod.game.Broadcast;
 import dod.game.GameLogic;
 
 /**
  * Represents a Network User and bridges the communication a network game communicator over a network to the Game logic object.
- * This class implements Runnable so can be used in threading.
+ * The connection is either driven by a NetworkReactor, which passes on socket events rather than this class owning a thread,
+ * or served with blocking reads on tasks of its own, which is cheap when those tasks are run on virtual threads.
+ * Complete lines are processed as commands and replies are queued until the socket is ready to take them.
+ * Everything a game command says to the user is held back until the command has finished and then queued as one message,
+ * so a look reply or a broadcast costs one write rather than one for each line.
+ * The held back output is encoded straight into a byte buffer, buffers that have been written are kept to be used again.
+ * A client that doesn't read its output fast enough is disconnected rather than letting its queue grow without limit,
+ * as is a client that sends a line that is too long.
  * @author Benjamin Dring
  */
-public class NetworkUser extends User implements Runnable{
-	Socket client; //Client socket
-	PrintWriter socketPrinter;
+public class NetworkUser extends User {
+	//The protocol is line based using the platform defaults, as the PrintWriter and BufferedReader versions did
+	private static final Charset CHARSET = Charset.defaultCharset();
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+	private static final int READ_BUFFER_SIZE = 4096;
+	//The most queued messages written by a single gathering write
+	private static final int WRITE_BATCH_SIZE = 64;
+	//The most bytes that can wait to be written before a client is disconnected, set with the system property dod.output.limit
+	private static final int MAX_QUEUED_BYTES = Integer.getInteger("dod.output.limit", 1 << 20);
+	//Set with the system property dod.output.dropBroadcasts, a client with too much queued output misses broadcasts rather than being disconnected
+	private static final boolean DROP_BROADCASTS = Boolean.getBoolean("dod.output.dropBroadcasts");
+	//The most written buffers kept to be used again
+	private static final int MAX_SPARE_BUFFERS = 8;
+	//The longest line a client can send before it is disconnected, set with the system property dod.input.limit
+	private static final int MAX_LINE_LENGTH = Integer.getInteger("dod.input.limit", 8192);
 
-	public NetworkUser(GameLogic game, Socket sock) {
-		super(game);
-		this.client = sock;
-		//Calls a look command instantly
-		game.lookAll();
+	private final SocketChannel channel; //Client connection
+	private volatile SelectionKey selectionKey; //Set once the reactor has registered the channel
+	private volatile NetworkReactor reactor; //The reactor that owns this connection, null when blocking
+	private volatile Executor blockingExecutor; //Runs the blocking tasks, null when a reactor is used
+	private final AtomicBoolean writeScheduled; //Indicates a blocking write task is waiting to run
+
+	private final ByteBuffer readBuffer;
+	private final ByteArrayOutputStream partialLine; //Bytes of a line that has not been finished yet
+	private boolean lastWasCarriageReturn; //Used to treat \r\n as a single line end
+
+	private final StringBuilder pendingOutput; //Output of the running command that has not been queued yet
+	private boolean flushRequested; //Indicates the game will queue the pending output, guarded by pendingOutput
+	private final Runnable flushTask; //Queues the pending output
+	private final CharsetEncoder encoder; //Encodes the pending output, guarded by pendingOutput
+	private CharBuffer pendingChars; //The pending output is copied here to be encoded, guarded by pendingOutput
+	private final ConcurrentLinkedQueue<ByteBuffer> spareBuffers; //Buffers that have been written and can be used again
+	private final ConcurrentLinkedQueue<ByteBuffer> output; //Messages waiting to be written
+	private final AtomicInteger queuedBytes; //The number of bytes in the output queue
+	private final ByteBuffer[] writeBatch; //Used to write many messages at once
+	private volatile boolean closing; //Indicates the connection closes once the output is written
+	private volatile boolean gameOverSent; //Indicates the game over has been handled, set by the game's thread
+	private final AtomicBoolean dead; //Indicates the player has been killed because the client can't be reached
+
+	/**
+	 * Sets up the user for a newly accepted connection, the connection still needs to be attached to a reactor or served
+	 * @param game GameLogic the game for the user to play
+	 * @param channel SocketChannel the client connection, non-blocking for a reactor and blocking to be served
+	 */
+	public NetworkUser(GameLogic game, SocketChannel channel) {
+		this(game, null, channel);
+	}
+
+	/**
+	 * Sets up the user for a newly accepted connection to a lobby, the user starts in the lobby's default game
+	 * @param lobby GameLobby the games the user can move between
+	 * @param channel SocketChannel the client connection, non-blocking for a reactor and blocking to be served
+	 */
+	public NetworkUser(GameLobby lobby, SocketChannel channel) {
+		this(lobby.getDefaultGame(), lobby, channel);
+	}
+
+	/**
+	 * Sets up the user for a newly accepted connection
+	 * @param game GameLogic the game for the user to play
+	 * @param lobby GameLobby the games the user can move between, null if there is only one game
+	 * @param channel SocketChannel the client connection
+	 */
+	private NetworkUser(GameLogic game, GameLobby lobby, SocketChannel channel) {
+		super(game, lobby);
+		this.channel = channel;
+		this.readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+		this.partialLine = new ByteArrayOutputStream();
+		this.pendingOutput = new StringBuilder();
+		this.flushRequested = false;
+		this.flushTask = new Runnable(){
+			@Override
+			public void run()
+			{
+				flushOutput();
+			}
+		};
+		//Characters that can't be encoded are replaced, as String.getBytes() did
+		this.encoder = CHARSET.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.pendingChars = CharBuffer.allocate(READ_BUFFER_SIZE);
+		this.spareBuffers = new ConcurrentLinkedQueue<ByteBuffer>();
+		this.output = new ConcurrentLinkedQueue<ByteBuffer>();
+		this.queuedBytes = new AtomicInteger(0);
+		this.writeBatch = new ByteBuffer[WRITE_BATCH_SIZE];
+		this.writeScheduled = new AtomicBoolean(false);
+		this.closing = false;
+		this.gameOverSent = false;
+		this.dead = new AtomicBoolean(false);
+		//Calls a look command instantly, now that the connection is ready for it
+		game.submit(new Runnable(){
+			@Override
+			public void run()
+			{
+				NetworkUser.this.game.requestLook(userID);
+			}
+		});
+	}
+
+	/**
+	 * Hands the connection over to a reactor which will drive it from now on
+	 * @param reactor NetworkReactor the I/O thread for this connection
+	 */
+	public void attach(NetworkReactor reactor)
+	{
+		this.reactor = reactor;
+		reactor.register(this);
+		checkGameOverLater();
 	}
-	
+
+	/**
+	 * Serves the connection with blocking reads and writes instead of a reactor
+	 * A task is run on the given executor that reads commands until the client leaves,
+	 * output is written by short tasks on the same executor so the game never waits on the socket
+	 * @param executor Executor the executor to run the tasks on
+	 */
+	public void serve(Executor executor)
+	{
+		this.blockingExecutor = executor;
+		//Anything that was said before we started is sent now
+		scheduleBlockingWrite();
+		executor.execute(new Runnable(){
+			@Override
+			public void run()
+			{
+				readLines();
+			}
+		});
+		checkGameOverLater();
+	}
+
+	/**
+	 * Queues a check for the end of the game, as a game that has already finished won't tell us again
+	 */
+	private void checkGameOverLater()
+	{
+		game.submit(new Runnable(){
+			@Override
+			public void run()
+			{
+				checkGameOver();
+			}
+		});
+	}
+
 	/**
 	 * Gets command strings from the socket and processes them and sends them to the game
-	 * Function ends when the game is over
+	 * Function ends when the client leaves or the connection is closed
 	 */
-	@Override
-	public void run() {
-		//New thread is created
-    	Thread clientReader = null;
-    	try {
-    		//Reads from client socket
-    		final BufferedReader br = new BufferedReader(new InputStreamReader(client.getInputStream()));
-    		
-    		clientReader = new Thread(){
-				public void run()
+	private void readLines()
+	{
+		try
+		{
+			final BufferedReader br = new BufferedReader(new InputStreamReader(channel.socket().getInputStream(), CHARSET));
+			final StringBuilder line = new StringBuilder();
+			while (true)
+			{
+				// Try to grab a command from the socket
+				final String command = readLine(br, line);
+				// Test for EOF (ctrl-D)
+				if (command == null)
 				{
-					try
-					{
-						while (true)
-						{
-							// Try to grab a command from the command line this is exactly as it was before except now it takes data from the client
-							final String command = br.readLine();
-							//Only respond to command if it is the current turn
-							// Test for EOF (ctrl-D)
-							if (command == null) {
-								processCommand("Die");
-							}
-							processCommand(command);
-						}
-					}
-					catch (IOException e)
-					{
-						processCommand("Die");
-					}
+					break;
 				}
-			};
-			
-			//Start listening to user input
-			clientReader.start();
-    		
-    		// Keep listening forever
-    		while (true) {
-    			//If it's game over than we need to stop
-    			if (isGameOver())
-    			{
-    				break;
-    			}
-
-    			//sleep for a second if it isn't your go
-    			try {
-					Thread.sleep(1000);
-				} catch (InterruptedException e) {
+				processCommand(command);
+			}
+		}
+		catch (final IOException e) {}
+		//A connection closed by the end of the game shouldn't kill the player
+		if (!closing)
+		{
+			connectionLost();
+		}
+	}
+
+	/**
+	 * Reads a line like BufferedReader.readLine() but gives up on a line that is too long
+	 * @param br BufferedReader the reader of the socket
+	 * @param line StringBuilder used to build the line, reused between lines
+	 * @return String the line without its line end, null at the end of the stream
+	 * @throws IOException if the connection fails or the line is too long
+	 */
+	private String readLine(BufferedReader br, StringBuilder line) throws IOException
+	{
+		line.setLength(0);
+		while (true)
+		{
+			int next = br.read();
+			if (next < 0)
+			{
+				return (line.length() == 0) ? null : line.toString();
+			}
+			if (next == '\n')
+			{
+				return line.toString();
+			}
+			if (next == '\r')
+			{
+				//\r\n is a single line end
+				br.mark(1);
+				if (br.read() != '\n')
+				{
+					br.reset();
+				}
+				return line.toString();
+			}
+			if (line.length() >= MAX_LINE_LENGTH)
+			{
+				System.out.println("Disconnecting a client that sent a line that is too long");
+				throw new IOException("line too long");
+			}
+			line.append((char) next);
+		}
+	}
+
+	/**
+	 * Reads whatever is available from the socket and processes every complete line as a command
+	 * @throws IOException if the connection fails
+	 */
+	void readFromChannel() throws IOException
+	{
+		int bytesRead = channel.read(readBuffer);
+		if (bytesRead < 0)
+		{
+			//End of stream means the client has gone
+			connectionLost();
+			return;
+		}
+
+		readBuffer.flip();
+		while (readBuffer.hasRemaining())
+		{
+			byte next = readBuffer.get();
+			if (next == '\n')
+			{
+				//The second half of \r\n has already ended the line
+				if (!lastWasCarriageReturn)
+				{
+					processLine();
+				}
+				lastWasCarriageReturn = false;
+			}
+			else if (next == '\r')
+			{
+				processLine();
+				lastWasCarriageReturn = true;
+			}
+			else if (partialLine.size() >= MAX_LINE_LENGTH)
+			{
+				//The line could grow without limit, so the client is treated like one that has gone
+				System.out.println("Disconnecting a client that sent a line that is too long");
+				partialLine.reset();
+				readBuffer.clear();
+				connectionLost();
+				return;
+			}
+			else
+			{
+				partialLine.write(next);
+				lastWasCarriageReturn = false;
+			}
+		}
+		readBuffer.clear();
+	}
+
+	/**
+	 * Writes as much of the queued output as the socket will accept, many messages are given to the socket at once
+	 * @return boolean true if all of the output has been written
+	 * @throws IOException if the connection fails
+	 */
+	boolean writeToChannel() throws IOException
+	{
+		while (true)
+		{
+			int batchSize = 0;
+			for (ByteBuffer message : output)
+			{
+				if (batchSize == writeBatch.length)
+				{
 					break;
 				}
-    		}
-    	} catch (final RuntimeException e) {
-    		// Die if something goes wrong.
-    		processCommand("Die");
-    	} catch (final IOException e) {
-    		processCommand("Die");
-    	}
-    	try {
-			client.close();
-		} catch (IOException e) {}
-    	//Close the listening thread
-    	if (clientReader != null)
-    	{
-    		clientReader.interrupt();
-    	}
-		
-	}
-	
-	/**
-	 * Outputs messages through the socket to the client
+				writeBatch[batchSize++] = message;
+			}
+			if (batchSize == 0)
+			{
+				break;
+			}
+
+			channel.write(writeBatch, 0, batchSize);
+			//Messages that have been written in full are removed from the queue
+			int written = 0;
+			while ((written < batchSize) && (!writeBatch[written].hasRemaining()))
+			{
+				queuedBytes.addAndGet(-writeBatch[written].limit());
+				output.poll();
+				recycle(writeBatch[written]);
+				written++;
+			}
+			Arrays.fill(writeBatch, 0, batchSize, null);
+			if (written < batchSize)
+			{
+				//The socket is full so we wait to be told we can write again
+				return false;
+			}
+		}
+		if (closing)
+		{
+			disconnect();
+		}
+		return true;
+	}
+
+	/**
+	 * Closes the connection once the final messages have been sent when the game ends
 	 */
 	@Override
-	protected void outputMessage(String message) {
+	public void gameOver()
+	{
+		checkGameOver();
+	}
+
+	/**
+	 * Checks if the game has ended, if it has the connection is closed once the final messages have been sent
+	 */
+	private synchronized void checkGameOver()
+	{
+		if ((!gameOverSent) && (isGameOver()))
+		{
+			gameOverSent = true;
+			//The final messages must be queued before we can tell if they have been sent
+			flushOutput();
+			closing = true;
+			if (output.isEmpty())
+			{
+				disconnect();
+			}
+		}
+	}
+
+	/**
+	 * Called when the client can no longer be reached, the player is killed and the connection closed
+	 */
+	void connectionLost()
+	{
+		//The reactor and the game's thread can both lose the client, the player is only killed once
+		if (dead.compareAndSet(false, true))
+		{
+			processCommand("Die");
+		}
+		disconnect();
+	}
+
+	/**
+	 * Closes the connection
+	 */
+	void disconnect()
+	{
 		try
 		{
-			//If a print writer is not present one is created
-			if (socketPrinter == null)
+			channel.close();
+		}
+		catch (IOException e) {}
+	}
+
+	/**
+	 * @return SocketChannel the client connection
+	 */
+	SocketChannel getChannel()
+	{
+		return this.channel;
+	}
+
+	/**
+	 * @return SelectionKey the key of this connection, null if it has not been registered yet
+	 */
+	SelectionKey getSelectionKey()
+	{
+		return this.selectionKey;
+	}
+
+	/**
+	 * @param selectionKey SelectionKey the key given when the connection was registered
+	 */
+	void setSelectionKey(SelectionKey selectionKey)
+	{
+		this.selectionKey = selectionKey;
+	}
+
+	/**
+	 * @return boolean true if there is output waiting to be written
+	 */
+	boolean hasPendingOutput()
+	{
+		return !output.isEmpty();
+	}
+
+	/**
+	 * Queues messages to be sent through the socket to the client.
+	 * Messages given by a game command are held back until the command finishes, anything else is queued straight away.
+	 */
+	@Override
+	protected void outputMessage(CharSequence message) {
+		boolean flushNow = false;
+		synchronized (pendingOutput)
+		{
+			pendingOutput.append(message).append(LINE_SEPARATOR);
+			if (!flushRequested)
 			{
-				socketPrinter = new PrintWriter(client.getOutputStream(), true);
+				final GameLogic currentGame = game;
+				if (currentGame.isRunningCommand())
+				{
+					flushRequested = true;
+					currentGame.runAfterCommand(flushTask);
+				}
+				else
+				{
+					flushNow = true;
+				}
 			}
-			socketPrinter.println(message);
 		}
-		catch (IOException e)
+		if (flushNow)
+		{
+			flushOutput();
+		}
+	}
+
+	/**
+	 * Queues a message that every player is being sent.
+	 * The broadcast's bytes are shared with every other connection so nothing is encoded or copied here,
+	 * anything this user was already sending is queued first so messages stay in order.
+	 * @param broadcast Broadcast the message to be sent
+	 */
+	@Override
+	public void sendBroadcast(Broadcast broadcast) {
+		flushOutput();
+		final ByteBuffer message = broadcast.getEncoded();
+		if (DROP_BROADCASTS && (queuedBytes.get() + message.limit() > MAX_QUEUED_BYTES))
+		{
+			//The client is behind, it misses this broadcast but keeps its connection
+			return;
+		}
+		queueOutput(message);
+	}
+
+	/**
+	 * Queues everything that has been held back as a single message
+	 */
+	private void flushOutput()
+	{
+		final ByteBuffer message;
+		synchronized (pendingOutput)
+		{
+			flushRequested = false;
+			if (pendingOutput.length() == 0)
+			{
+				return;
+			}
+			message = encodePendingOutput();
+			pendingOutput.setLength(0);
+		}
+		queueOutput(message);
+	}
+
+	/**
+	 * Encodes the pending output without making a string of it, the pending output lock must be held
+	 * @return ByteBuffer the encoded output ready to be written
+	 */
+	private ByteBuffer encodePendingOutput()
+	{
+		final int length = pendingOutput.length();
+		if (pendingChars.capacity() < length)
+		{
+			pendingChars = CharBuffer.allocate(Math.max(length, pendingChars.capacity() * 2));
+		}
+		pendingChars.clear();
+		pendingOutput.getChars(0, length, pendingChars.array(), 0);
+		pendingChars.limit(length);
+
+		//The buffer is made large enough that the encoding can't overflow it
+		final ByteBuffer message = takeBuffer((int) Math.ceil(length * (double) encoder.maxBytesPerChar()));
+		encoder.reset();
+		encoder.encode(pendingChars, message, true);
+		encoder.flush(message);
+		message.flip();
+		return message;
+	}
+
+	/**
+	 * Gets an empty buffer, one that has already been written is used if it is large enough
+	 * @param capacity int the number of bytes needed
+	 * @return ByteBuffer the buffer
+	 */
+	private ByteBuffer takeBuffer(int capacity)
+	{
+		final ByteBuffer spare = spareBuffers.poll();
+		if ((spare != null) && (spare.capacity() >= capacity))
+		{
+			spare.clear();
+			return spare;
+		}
+		return ByteBuffer.allocate(capacity);
+	}
+
+	/**
+	 * Keeps a buffer that has been written so it can be used again, broadcasts are shared so they are never kept
+	 * @param message ByteBuffer the written buffer
+	 */
+	private void recycle(ByteBuffer message)
+	{
+		if ((!message.isReadOnly()) && (spareBuffers.size() < MAX_SPARE_BUFFERS))
+		{
+			spareBuffers.offer(message);
+		}
+	}
+
+	/**
+	 * Adds a message to the output queue and makes sure it will be written.
+	 * If the client has let too much output build up it is disconnected instead, so it can't hold up the game.
+	 * @param message ByteBuffer the encoded message, it is written from its position to its limit
+	 */
+	void queueOutput(ByteBuffer message)
+	{
+		if (!channel.isOpen())
+		{
+			//No one is left to read it
+			return;
+		}
+		if (queuedBytes.addAndGet(message.limit()) > MAX_QUEUED_BYTES)
+		{
+			System.out.println("Disconnecting a client that is not reading its output");
+			//The message and everything queued are dropped, so they are taken off the count as well
+			queuedBytes.addAndGet(-message.limit());
+			ByteBuffer dropped;
+			while ((dropped = output.poll()) != null)
+			{
+				queuedBytes.addAndGet(-dropped.limit());
+			}
+			connectionLost();
+			return;
+		}
+		output.add(message);
+		//If we are not registered yet the reactor will see the output when we are
+		if (reactor != null)
+		{
+			reactor.requestWrite(this);
+		}
+		else if (blockingExecutor != null)
+		{
+			scheduleBlockingWrite();
+		}
+	}
+
+	/**
+	 * Starts a task that writes the queued output unless one is already waiting to run
+	 */
+	private void scheduleBlockingWrite()
+	{
+		if (writeScheduled.compareAndSet(false, true))
+		{
+			blockingExecutor.execute(new Runnable(){
+				@Override
+				public void run()
+				{
+					writeBlockingOutput();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Writes all of the queued output to the socket, blocking until it is written
+	 */
+	private void writeBlockingOutput()
+	{
+		writeScheduled.set(false);
+		synchronized (output)
+		{
+			try
+			{
+				writeToChannel();
+			}
+			catch (IOException e)
+			{
+				System.out.println("Can't connect to client");
+			}
+		}
+	}
+
+	/**
+	 * Processes the line that has just been finished
+	 */
+	private void processLine()
+	{
+		final String command = new String(partialLine.toByteArray(), CHARSET);
+		partialLine.reset();
+		if (dead.get())
 		{
-			System.out.println("Can't connect to client");
+			return;
 		}
+		processCommand(command);
 	}
 
 }
@@ -1,60 +1,145 @@
 package dod;
 
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.text.ParseException;
 import javax.swing.JOptionPane;
 
 import dod.game.GameLogic;
 
 /**
- * The class that represents the server it sets up the game and creates threads for each client.
+ * The class that represents the server it sets up the game and accepts clients.
+ * Clients are shared between a few NetworkReactor I/O threads rather than each being given its own thread.
+ * When run in the virtual thread execution mode each client is instead served by blocking tasks on virtual threads.
+ * A server hosts a lobby of games, clients join the first game and can move between them with the GAMES and JOIN commands.
  * @author Benjamin Dring
  */
 public class Server extends Thread{
-	private ServerSocket server; //The server socket
+	private ServerSocketChannel server; //The server socket
 	private int port; //The chosen port
-	private final GameLogic game;
-	
+	private final GameLobby lobby; //The games hosted by the server
+	private final int ioThreadCount; //The number of reactors used
+	private final ExecutionMode executionMode; //How clients are served
+	//The name given to the game of a server that was set up with a single game
+	public static final String DEFAULT_GAME_NAME = "MAIN";
+
 	/**
 	 * Sets up a server on the current machine using a given game and port number
+	 * One I/O thread is used for each processor
 	 * @param game GameLogic the GameLogic to be run
 	 * @param port int the port number to run the server on
 	 */
 	public Server(GameLogic game, int port) {
-		this.game = game;
+		this(game, port, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Sets up a server on the current machine using a given game, port number and execution mode
+	 * @param game GameLogic the GameLogic to be run
+	 * @param port int the port number to run the server on
+	 * @param executionMode ExecutionMode virtual serves every client on its own virtual thread, platform uses the I/O threads
+	 */
+	public Server(GameLogic game, int port, ExecutionMode executionMode) {
+		this(game, port, Runtime.getRuntime().availableProcessors(), executionMode);
+	}
+
+	/**
+	 * Sets up a server on the current machine using a given game, port number and number of I/O threads
+	 * @param game GameLogic the GameLogic to be run
+	 * @param port int the port number to run the server on
+	 * @param ioThreadCount int the number of threads that handle client connections
+	 */
+	public Server(GameLogic game, int port, int ioThreadCount) {
+		this(game, port, ioThreadCount, ExecutionMode.getDefault());
+	}
+
+	/**
+	 * Sets up a server with every option given
+	 * @param game GameLogic the GameLogic to be run
+	 * @param port int the port number to run the server on
+	 * @param ioThreadCount int the number of threads that handle client connections, not used by virtual threads
+	 * @param executionMode ExecutionMode how the clients are served
+	 */
+	public Server(GameLogic game, int port, int ioThreadCount, ExecutionMode executionMode) {
+		this(new GameLobby(DEFAULT_GAME_NAME, game), port, ioThreadCount, executionMode);
+	}
+
+	/**
+	 * Sets up a server on the current machine hosting every game of a lobby
+	 * One I/O thread is used for each processor
+	 * @param lobby GameLobby the games to be hosted, it must hold at least one game
+	 * @param port int the port number to run the server on
+	 */
+	public Server(GameLobby lobby, int port) {
+		this(lobby, port, Runtime.getRuntime().availableProcessors(), ExecutionMode.getDefault());
+	}
+
+	/**
+	 * Sets up a server hosting a lobby with every option given
+	 * @param lobby GameLobby the games to be hosted, it must hold at least one game
+	 * @param port int the port number to run the server on
+	 * @param ioThreadCount int the number of threads that handle client connections, not used by virtual threads
+	 * @param executionMode ExecutionMode how the clients are served
+	 */
+	public Server(GameLobby lobby, int port, int ioThreadCount, ExecutionMode executionMode) {
+		this.lobby = lobby;
 		this.port = port;
+		this.ioThreadCount = Math.max(1, ioThreadCount);
+		this.executionMode = executionMode;
 	}
-	
+
 	/**
 	 * Listens for new clients and sets up a game for them
 	 * Can run in a new thread by using Server.start()
 	 */
 	@Override
 	public void run()
-	{	
-		
+	{
+
 		try
 		{
+			//Virtual threads make blocking clients cheap so reactors are only needed for platform threads
+			final boolean useReactors = (executionMode != ExecutionMode.VIRTUAL);
+			//The reactors are created and started before any clients arrive
+			NetworkReactor[] reactors = new NetworkReactor[useReactors ? ioThreadCount : 0];
+			for (int index = 0; index < reactors.length; index++)
+			{
+				reactors[index] = new NetworkReactor("Network I/O " + index);
+				reactors[index].start();
+			}
+			int nextReactor = 0;
+
 			//Server is created
-			server = new ServerSocket(port);
+			server = ServerSocketChannel.open();
+			server.bind(new InetSocketAddress(port));
 			//Loops indefinitely
 			while (true)
 			{
 				try
 				{
 					//Accepts a new client and creates a new user
-					final Socket client = server.accept();
-					NetworkUser user = new NetworkUser(game, client);
-					
-					//User is run in a new thread allowing this one to get the next client
-					Thread clientThread = new Thread(user);
-					clientThread.start();
+					final SocketChannel client = server.accept();
+					if (!useReactors)
+					{
+						//The user is served by blocking tasks allowing this thread to get the next client
+						new NetworkUser(lobby, client).serve(executionMode.getExecutor());
+						continue;
+					}
+					client.configureBlocking(false);
+					NetworkUser user = new NetworkUser(lobby, client);
+
+					//Clients are spread evenly over the reactors
+					user.attach(reactors[nextReactor]);
+					nextReactor = (nextReactor + 1) % reactors.length;
 
 				}
 				catch (IOException e)
 				{
-					//If there is a problem with a client just ignore and look for the next one 
+					//If there is a problem with a client just ignore and look for the next one
 					continue;
 				}
 			}
@@ -67,6 +152,74 @@ public class Server extends Thread{
 			System.exit(0);
 		}
 
-		
+
+	}
+
+	/**
+	 * Runs a server without a GUI hosting a game for each map given, the games are started straight away
+	 * @param args String[] the port followed by one or more map files, "--virtual-threads" may also be given
+	 */
+	public static void main(String[] args)
+	{
+		int port = -1;
+		GameLobby lobby = new GameLobby();
+		for (String arg : args)
+		{
+			if (arg.equals("--virtual-threads"))
+			{
+				ExecutionMode.setDefault(ExecutionMode.VIRTUAL);
+			}
+			else if (port < 0)
+			{
+				try
+				{
+					port = Integer.parseInt(arg);
+				}
+				catch (NumberFormatException e)
+				{
+					printUsage();
+					return;
+				}
+			}
+			else
+			{
+				//Each game is named after its map file
+				String gameName = new File(arg).getName().replace(' ', '_');
+				try
+				{
+					lobby.createGame(gameName, arg);
+					System.out.println("Hosting " + arg + " as " + gameName.toUpperCase());
+				}
+				catch (FileNotFoundException e)
+				{
+					System.out.println("Map file " + arg + " could not be found");
+					return;
+				}
+				catch (ParseException e)
+				{
+					System.out.println("Map file " + arg + " is not valid: " + e.getMessage());
+					return;
+				}
+				catch (IllegalArgumentException e)
+				{
+					System.out.println(e.getMessage());
+					return;
+				}
+			}
+		}
+		if ((port < 0) || (lobby.getDefaultGame() == null))
+		{
+			printUsage();
+			return;
+		}
+		new Server(lobby, port).start();
+	}
+
+	/**
+	 * Prints how the headless server is run
+	 */
+	private static void printUsage()
+	{
+		System.out.println("Usage: java dod.Server [--virtual-threads] <port> <map file> [<map file> ...]");
 	}
 }
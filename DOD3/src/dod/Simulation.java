@@ -0,0 +1,699 @@
+package dod;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import dod.BotLogic.AggressiveBot;
+import dod.BotLogic.Bot;
+import dod.BotLogic.FriendlyBot;
+import dod.BotLogic.ObjectiveBot;
+import dod.BotLogic.RandomBot;
+import dod.Communicator.GameCommunicator;
+import dod.Communicator.LocalGameCommunicator;
+import dod.GUI.ClientListener;
+import dod.game.GameLogic;
+
+/**
+ * Plays bot against bot games without a GUI, sockets or threads for the bots, as fast as the processor allows.
+ * Each game is played start to finish by a single thread, the game's commands are run straight away by that thread
+ * and the bots are stepped in turn rather than waiting on messages, so many games can be played at once by a ForkJoinPool.
+ * Every game is seeded from the simulation's seed so a simulation can be played again with the same results,
+ * only the timings will differ.
+ * @author Benjamin Dring
+ */
+public class Simulation {
+	public static final int DEFAULT_GAMES = 1000;
+	//Games still going after this many turns are stopped and counted as unfinished
+	public static final int DEFAULT_MAX_TURNS = 2000;
+	//No player has enough action points for this many actions, a turn that goes on longer is stalled and is ended
+	private static final int MAX_ACTIONS_PER_TURN = 100;
+
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+	//Runs the game's commands on the thread that gave them
+	private static final Executor DIRECT_EXECUTOR = new Executor(){
+		@Override
+		public void execute(Runnable command)
+		{
+			command.run();
+		}
+	};
+
+	/**
+	 * The bots that can take part in a simulation
+	 */
+	public enum BotType {
+		AGGRESSIVE("AggressiveBot"),
+		FRIENDLY("FriendlyBot"),
+		OBJECTIVE("ObjectiveBot"),
+		RANDOM("RandomBot");
+
+		private final String className; //The name of the bot's class, used to name it
+
+		/**
+		 * @param className String the name of the bot's class
+		 */
+		private BotType(String className)
+		{
+			this.className = className;
+		}
+
+		/**
+		 * Creates a bot of this type
+		 * @param comm GameCommunicator the communicator the bot plays through
+		 * @param random SplittableRandom the source of the bot's random choices
+		 * @return Bot the new bot
+		 */
+		public Bot createBot(GameCommunicator comm, SplittableRandom random)
+		{
+			switch (this)
+			{
+				case AGGRESSIVE:
+					return new AggressiveBot(comm, random);
+				case FRIENDLY:
+					return new FriendlyBot(comm, random);
+				case OBJECTIVE:
+					return new ObjectiveBot(comm, random);
+				default:
+					return new RandomBot(comm, random);
+			}
+		}
+
+		/**
+		 * @return String the name of the bot's class
+		 */
+		public String getClassName()
+		{
+			return this.className;
+		}
+
+		/**
+		 * Finds a bot type by its class name or its own name, in any case
+		 * @param name String the name, such as AggressiveBot or aggressive
+		 * @return BotType the bot type, null if there isn't one with that name
+		 */
+		public static BotType fromString(String name)
+		{
+			for (BotType type : values())
+			{
+				if ((type.className.equalsIgnoreCase(name)) || (type.name().equalsIgnoreCase(name)))
+				{
+					return type;
+				}
+			}
+			return null;
+		}
+	}
+
+	private final String mapFile; //The map every game is played on
+	private final BotType[] lineup; //The bots in each game, their seats are rotated from game to game
+	private final int games; //The number of games to play
+	private final long seed; //The seed every game's seed comes from
+	private final int maxTurns; //The turns a game is given to finish
+
+	/**
+	 * Sets up a simulation
+	 * @param mapFile String the name of the file to load the map from
+	 * @param lineup List<BotType> the bots that play in every game, a type may be given more than once
+	 * @param games int the number of games to play
+	 * @param seed long the seed of the simulation
+	 * @param maxTurns int the number of turns after which a game is stopped
+	 */
+	public Simulation(String mapFile, List<BotType> lineup, int games, long seed, int maxTurns)
+	{
+		if (lineup.isEmpty())
+		{
+			throw new IllegalArgumentException("A simulation needs at least one bot");
+		}
+		this.mapFile = mapFile;
+		this.lineup = lineup.toArray(new BotType[lineup.size()]);
+		this.games = games;
+		this.seed = seed;
+		this.maxTurns = maxTurns;
+	}
+
+	/**
+	 * Plays every game of the simulation
+	 * @param pool ForkJoinPool the pool that plays the games, each game is played by one of its threads
+	 * @return Statistics the results of the games
+	 * @throws FileNotFoundException
+	 * @throws ParseException
+	 */
+	public Statistics run(ForkJoinPool pool) throws FileNotFoundException, ParseException
+	{
+		//The map is checked once so a bad map is reported rather than failing every game
+		new GameLogic(mapFile, null, DIRECT_EXECUTOR, seed);
+
+		//Seeds are given out up front so each game gets the same one whichever thread plays it
+		final SplittableRandom seeds = new SplittableRandom(seed);
+		List<Callable<GameResult>> tasks = new ArrayList<Callable<GameResult>>(games);
+		for (int gameNumber = 0; gameNumber < games; gameNumber++)
+		{
+			final int seatOffset = gameNumber;
+			final long gameSeed = seeds.nextLong();
+			tasks.add(new Callable<GameResult>(){
+				@Override
+				public GameResult call() throws Exception
+				{
+					return playGame(gameSeed, seatOffset);
+				}
+			});
+		}
+
+		final Statistics statistics = new Statistics();
+		final long startTime = System.nanoTime();
+		List<Future<GameResult>> results = pool.invokeAll(tasks);
+		statistics.elapsedNanos = System.nanoTime() - startTime;
+		for (Future<GameResult> result : results)
+		{
+			try
+			{
+				statistics.add(result.get());
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("interrupted while waiting for the games");
+			}
+			catch (ExecutionException e)
+			{
+				throw new IllegalStateException("A game could not be played", e.getCause());
+			}
+		}
+		return statistics;
+	}
+
+	/**
+	 * Plays a single game on the calling thread
+	 * @param gameSeed long the seed of the game
+	 * @param seatOffset int how far the lineup is rotated, so every bot gets every seat over many games
+	 * @return GameResult the result of the game
+	 * @throws FileNotFoundException
+	 * @throws ParseException
+	 */
+	private GameResult playGame(long gameSeed, int seatOffset) throws FileNotFoundException, ParseException
+	{
+		final GameListener gameListener = new GameListener();
+		final GameLogic game = new GameLogic(mapFile, gameListener, DIRECT_EXECUTOR, gameSeed);
+
+		//Players join in seat order so their random streams are split in the same order every time
+		SimulatedPlayer[] players = new SimulatedPlayer[lineup.length];
+		for (int seat = 0; seat < lineup.length; seat++)
+		{
+			BotType type = lineup[(seat + seatOffset) % lineup.length];
+			LocalGameCommunicator comm = new LocalGameCommunicator(game);
+			players[seat] = new SimulatedPlayer(type, comm, type.createBot(comm, game.splitRandom()));
+			comm.addListener(players[seat]);
+			comm.sendMessageToGame("LOOK");
+			comm.sendMessageToGame("HELLO " + type.getClassName() + "_" + seat);
+		}
+		game.submit(new Runnable(){
+			@Override
+			public void run()
+			{
+				game.startGame();
+			}
+		});
+
+		GameResult result = new GameResult(players.length);
+		int turns = 0;
+		int actionsThisTurn = 0;
+		while ((!game.isGameOver()) && (!gameListener.everyoneDied) && (turns < maxTurns))
+		{
+			boolean anyActed = false;
+			for (SimulatedPlayer player : players)
+			{
+				if (player.step(result))
+				{
+					anyActed = true;
+					actionsThisTurn++;
+				}
+			}
+			if (actionsThisTurn > MAX_ACTIONS_PER_TURN)
+			{
+				//An action that doesn't use up action points would let the turn go on forever, so it is ended and counted
+				SimulatedPlayer current = getCurrentPlayer(players);
+				if (current == null)
+				{
+					break;
+				}
+				current.endTurn();
+				result.stalledTurns++;
+			}
+			else if (!anyActed)
+			{
+				//The player whose turn it is can't act, such as after a failed command, so their turn is ended for them
+				SimulatedPlayer current = getCurrentPlayer(players);
+				if (current == null)
+				{
+					break;
+				}
+				current.endTurn();
+				result.forcedTurnEnds++;
+			}
+			int turnsSoFar = 0;
+			for (SimulatedPlayer player : players)
+			{
+				turnsSoFar += player.turns;
+			}
+			if (turnsSoFar != turns)
+			{
+				turns = turnsSoFar;
+				actionsThisTurn = 0;
+			}
+		}
+
+		result.finished = (game.isGameOver()) || (gameListener.everyoneDied);
+		for (int seat = 0; seat < players.length; seat++)
+		{
+			result.types[seat] = players[seat].type;
+			result.turns[seat] = players[seat].turns;
+			result.nanos[seat] = players[seat].nanos;
+			if (players[seat].won)
+			{
+				result.winner = seat;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param players SimulatedPlayer[] the players of a game
+	 * @return SimulatedPlayer the player whose turn it is, null if it is no one's
+	 */
+	private static SimulatedPlayer getCurrentPlayer(SimulatedPlayer[] players)
+	{
+		for (SimulatedPlayer player : players)
+		{
+			if (player.myTurn)
+			{
+				return player;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Plays a simulation from the command line and prints its statistics
+	 * @param args String[] the options, the map file and the bots to play, every bot type plays if none are given
+	 */
+	public static void main(String[] args)
+	{
+		int games = DEFAULT_GAMES;
+		long seed = new SplittableRandom().nextLong();
+		int threads = Runtime.getRuntime().availableProcessors();
+		int maxTurns = DEFAULT_MAX_TURNS;
+		String mapFile = null;
+		List<BotType> lineup = new ArrayList<BotType>();
+		try
+		{
+			for (int index = 0; index < args.length; index++)
+			{
+				String arg = args[index];
+				if ((arg.startsWith("--")) && (index + 1 >= args.length))
+				{
+					printUsage();
+					return;
+				}
+				if (arg.equals("--games"))
+				{
+					games = Integer.parseInt(args[++index]);
+				}
+				else if (arg.equals("--seed"))
+				{
+					seed = Long.parseLong(args[++index]);
+				}
+				else if (arg.equals("--threads"))
+				{
+					threads = Integer.parseInt(args[++index]);
+				}
+				else if (arg.equals("--max-turns"))
+				{
+					maxTurns = Integer.parseInt(args[++index]);
+				}
+				else if (mapFile == null)
+				{
+					mapFile = arg;
+				}
+				else
+				{
+					BotType type = BotType.fromString(arg);
+					if (type == null)
+					{
+						System.out.println("Unknown bot " + arg);
+						printUsage();
+						return;
+					}
+					lineup.add(type);
+				}
+			}
+		}
+		catch (NumberFormatException e)
+		{
+			printUsage();
+			return;
+		}
+		if ((mapFile == null) || (games < 1) || (threads < 1) || (maxTurns < 1))
+		{
+			printUsage();
+			return;
+		}
+		if (lineup.isEmpty())
+		{
+			for (BotType type : BotType.values())
+			{
+				lineup.add(type);
+			}
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		boolean botsFailed = false;
+		try
+		{
+			System.out.println("Playing " + games + " games of " + mapFile + " with seed " + seed + " on " + threads + " threads");
+			Statistics statistics = new Simulation(mapFile, lineup, games, seed, maxTurns).run(pool);
+			statistics.print(System.out);
+			botsFailed = (statistics.getBotErrors() > 0);
+		}
+		catch (FileNotFoundException e)
+		{
+			System.out.println("Map file " + mapFile + " could not be found");
+		}
+		catch (ParseException e)
+		{
+			System.out.println("Map file " + mapFile + " is not valid: " + e.getMessage());
+		}
+		catch (IllegalStateException e)
+		{
+			System.out.println(e.getMessage());
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+		if (botsFailed)
+		{
+			//Scripts running the simulation are told the results measured broken bots
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Prints how the simulation is run
+	 */
+	private static void printUsage()
+	{
+		System.out.println("Usage: java dod.Simulation [--games <n>] [--seed <n>] [--threads <n>] [--max-turns <n>] <map file> [<bot> ...]");
+		StringBuilder bots = new StringBuilder("Bots:");
+		for (BotType type : BotType.values())
+		{
+			bots.append(' ').append(type.getClassName());
+		}
+		System.out.println(bots);
+	}
+
+	/**
+	 * The results of a simulation, gathered for each bot type
+	 */
+	public static class Statistics {
+		private final int[] seats; //The number of games each bot type played
+		private final int[] wins;
+		private final long[] turns; //The turns each bot type was given
+		private final long[] nanos; //The time spent on each bot type's turns
+		private int games;
+		private int unfinishedGames; //Games stopped by the turn limit
+		private int forcedTurnEnds; //Turns ended for a bot that couldn't act
+		private int stalledTurns; //Turns ended because they went on for too many actions
+		private int botErrors; //Actions that failed inside a bot
+		private RuntimeException firstBotError; //The first of those errors, null if there were none
+		private long elapsedNanos; //The time taken to play every game
+
+		private Statistics()
+		{
+			int typeCount = BotType.values().length;
+			this.seats = new int[typeCount];
+			this.wins = new int[typeCount];
+			this.turns = new long[typeCount];
+			this.nanos = new long[typeCount];
+		}
+
+		/**
+		 * Adds the result of a game
+		 * @param result GameResult the result
+		 */
+		private void add(GameResult result)
+		{
+			games++;
+			if (!result.finished)
+			{
+				unfinishedGames++;
+			}
+			forcedTurnEnds += result.forcedTurnEnds;
+			stalledTurns += result.stalledTurns;
+			botErrors += result.botErrors;
+			if (firstBotError == null)
+			{
+				firstBotError = result.firstBotError;
+			}
+			for (int seat = 0; seat < result.types.length; seat++)
+			{
+				int type = result.types[seat].ordinal();
+				seats[type]++;
+				turns[type] += result.turns[seat];
+				nanos[type] += result.nanos[seat];
+				if (result.winner == seat)
+				{
+					wins[type]++;
+				}
+			}
+		}
+
+		/**
+		 * @param type BotType the bot type
+		 * @return double the fraction of its games the bot type won, 0 if it didn't play
+		 */
+		public double getWinRate(BotType type)
+		{
+			int played = seats[type.ordinal()];
+			return (played == 0) ? 0 : (wins[type.ordinal()] / (double) played);
+		}
+
+		/**
+		 * @param type BotType the bot type
+		 * @return double the turns the bot type took for each second spent on its turns, 0 if it didn't play
+		 */
+		public double getTurnsPerSecond(BotType type)
+		{
+			long time = nanos[type.ordinal()];
+			return (time == 0) ? 0 : (turns[type.ordinal()] * 1e9 / time);
+		}
+
+		/**
+		 * @return double the turns played across every game for each second the simulation ran
+		 */
+		public double getTotalTurnsPerSecond()
+		{
+			long totalTurns = 0;
+			for (long typeTurns : turns)
+			{
+				totalTurns += typeTurns;
+			}
+			return (elapsedNanos == 0) ? 0 : (totalTurns * 1e9 / elapsedNanos);
+		}
+
+		/**
+		 * @return int the number of games played
+		 */
+		public int getGames()
+		{
+			return this.games;
+		}
+
+		/**
+		 * @return int the number of actions that failed inside a bot, a working bot never has any
+		 */
+		public int getBotErrors()
+		{
+			return this.botErrors;
+		}
+
+		/**
+		 * @return long the time taken to play every game in nanoseconds
+		 */
+		public long getElapsedNanos()
+		{
+			return this.elapsedNanos;
+		}
+
+		/**
+		 * Prints a table of the statistics
+		 * @param out PrintStream where to print
+		 */
+		public void print(PrintStream out)
+		{
+			double seconds = elapsedNanos / 1e9;
+			out.println(String.format("Played %d games in %.2fs (%.1f games/s, %.0f turns/s)",
+					games, seconds, games / seconds, getTotalTurnsPerSecond()));
+			out.println(String.format("Unfinished games: %d, forced turn ends: %d, stalled turns: %d, bot errors: %d",
+					unfinishedGames, forcedTurnEnds, stalledTurns, botErrors));
+			if (firstBotError != null)
+			{
+				//The results can't be trusted if the bots broke, so the first error is shown to be fixed
+				out.println("The bots failed, the first error was:");
+				firstBotError.printStackTrace(out);
+			}
+			out.println(String.format("%-15s %8s %8s %9s %10s %12s", "Bot", "Games", "Wins", "Win rate", "Turns", "Turns/s"));
+			for (BotType type : BotType.values())
+			{
+				int index = type.ordinal();
+				if (seats[index] > 0)
+				{
+					out.println(String.format("%-15s %8d %8d %8.1f%% %10d %12.0f", type.getClassName(), seats[index],
+							wins[index], getWinRate(type) * 100, turns[index], getTurnsPerSecond(type)));
+				}
+			}
+		}
+	}
+
+	/**
+	 * The result of a single game
+	 */
+	private static class GameResult {
+		private final BotType[] types; //The bot in each seat
+		private final int[] turns; //The turns given to each seat
+		private final long[] nanos; //The time spent on each seat's turns
+		private int winner; //The seat that won, -1 if no one did
+		private boolean finished; //False if the game was stopped by the turn limit
+		private int forcedTurnEnds;
+		private int stalledTurns;
+		private int botErrors;
+		private RuntimeException firstBotError; //The first error thrown by a bot, null if there were none
+
+		/**
+		 * @param seats int the number of players in the game
+		 */
+		public GameResult(int seats)
+		{
+			this.types = new BotType[seats];
+			this.turns = new int[seats];
+			this.nanos = new long[seats];
+			this.winner = -1;
+		}
+	}
+
+	/**
+	 * Listens to a game to find out if every player has died, the game is not restarted
+	 */
+	private static class GameListener implements ClientListener {
+		private boolean everyoneDied;
+
+		@Override
+		public void pushMessage(String message) {}
+
+		@Override
+		public void restartGame()
+		{
+			everyoneDied = true;
+		}
+	}
+
+	/**
+	 * A bot in a simulated game, it passes on the messages from the game as a bot GUI would and records how the bot did
+	 */
+	private static class SimulatedPlayer implements ClientListener {
+		private final BotType type;
+		private final GameCommunicator comm;
+		private final Bot bot;
+		private boolean myTurn;
+		private boolean won;
+		private int turns; //The turns the bot has been given
+		private long nanos; //The time spent on the bot's turns
+
+		/**
+		 * @param type BotType the type of the bot
+		 * @param comm GameCommunicator the communicator the bot plays through
+		 * @param bot Bot the bot
+		 */
+		public SimulatedPlayer(BotType type, GameCommunicator comm, Bot bot)
+		{
+			this.type = type;
+			this.comm = comm;
+			this.bot = bot;
+		}
+
+		/**
+		 * Lets the bot act if it can, a bot that fails to decide on an action is recorded as an error
+		 * @param result GameResult the result of the game being played
+		 * @return boolean true if the bot acted
+		 */
+		public boolean step(GameResult result)
+		{
+			final long startTime = System.nanoTime();
+			try
+			{
+				return bot.step();
+			}
+			catch (RuntimeException e)
+			{
+				result.botErrors++;
+				if (result.firstBotError == null)
+				{
+					result.firstBotError = e;
+				}
+				return false;
+			}
+			finally
+			{
+				nanos += System.nanoTime() - startTime;
+			}
+		}
+
+		/**
+		 * Ends the player's turn for them
+		 */
+		public void endTurn()
+		{
+			final long startTime = System.nanoTime();
+			comm.sendMessageToGame("ENDTURN");
+			nanos += System.nanoTime() - startTime;
+		}
+
+		@Override
+		public void pushMessage(String message)
+		{
+			if (message.startsWith("LOOKREPLY"))
+			{
+				bot.giveLookReply(message.split(LINE_SEPARATOR));
+				return;
+			}
+			if (message.startsWith("DIE"))
+			{
+				won = message.equals("DIE You Won!");
+				bot.die();
+				return;
+			}
+			if (message.startsWith("STARTTURN"))
+			{
+				myTurn = true;
+				turns++;
+			}
+			else if (message.startsWith("ENDTURN"))
+			{
+				myTurn = false;
+			}
+			bot.handelMessage(message);
+		}
+
+		@Override
+		public void restartGame() {}
+	}
+}
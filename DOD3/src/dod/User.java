@@ -1,5 +1,10 @@
 package dod;
 
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dod.game.Broadcast;
 import dod.game.CommandException;
 import dod.game.CompassDirection;
 import dod.game.GameLogic;
@@ -14,27 +19,119 @@ import dod.game.PlayerListener;
 public abstract class User implements PlayerListener{
 	// The game which the command line user will operate on.
     // This is protected to enforce the use of "processCommand".
-    protected final GameLogic game;
+    // It is changed when the user joins another game of the lobby.
+    protected volatile GameLogic game;
     
     //Used to identify users from each other
-    protected int userID;
+    protected volatile int userID;
+    
+    //The userID of a user who no longer has a player, such as after the game restarted
+    protected static final int NO_PLAYER = -1;
+    
+    private final GameLobby lobby; //The games the user can join, null if there is only one game
+    
+    private String name; //The name given by HELLO, null until one is given
     
     private boolean didUserWin; //indicates if a user has won
     
     private boolean goalSent; //indicates if a goal message has been sent
     
-    private static int autoAsignPlayerNumber = 0; //for when a name is not supplied
+    //for when a name is not supplied, shared by every game so it is atomic as the games run on many threads
+    private static final AtomicInteger autoAsignPlayerNumber = new AtomicInteger(0);
+    
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+    
+    private final StringBuilder lookReply = new StringBuilder(); //Reused to build each look reply
+    
+    //The capability a client asks for to be sent only the rows of its look that have changed
+    private static final String LOOK_DELTA_CAPABILITY = "LOOKDELTA";
+    //The capability a client asks for to be told SUCCESS when a command works, so it knows the outcome of every command it sends
+    private static final String SUCCESS_CAPABILITY = "SUCCESS";
+    
+    private boolean deltaLooks; //indicates the client has asked for look deltas
+    private boolean successReplies; //indicates the client has asked for SUCCESS replies
+    private StringBuilder lookView = new StringBuilder(); //The rows of the look being sent
+    private StringBuilder lastLookView = new StringBuilder(); //The rows of the last look sent
+    
+    //The characters that are kept when a message or name is sanitised
+    private static final boolean[] MESSAGE_CHARACTERS = createMessageCharacters();
+    
+    /**
+     * The commands a user can give, they are found from the command string without using regular expressions.
+     * Commands that act on the map can only be given on the user's turn.
+     */
+    private enum Command {
+	HELLO(false, false),
+	LOOK(false, false),
+	DIE(false, false),
+	CAPABILITY(false, false),
+	GAMES(false, true),
+	JOIN(false, true),
+	SHOUT(false, false),
+	PICKUP(true, false),
+	MOVE(true, false),
+	ATTACK(true, false),
+	GIFT(true, false),
+	ENDTURN(true, false),
+	SETPLAYERPOS(true, false);
+	
+	private static final Command[] COMMANDS = values(); //Kept as values() copies the array every time
+	
+	private final boolean needsTurn; //Can only be given on the user's turn
+	private final boolean needsLobby; //Only known to users of a lobby
+	
+	/**
+	 * @param needsTurn boolean true if the command can only be given on the user's turn
+	 * @param needsLobby boolean true if the command is only known to users of a lobby
+	 */
+	private Command(boolean needsTurn, boolean needsLobby) {
+	    this.needsTurn = needsTurn;
+	    this.needsLobby = needsLobby;
+	}
+	
+	/**
+	 * Finds the command at the start of a command string, in any case
+	 * @param commandString String the command string
+	 * @param length int the length of the command word
+	 * @return Command the command, null if the word isn't a command
+	 */
+	public static Command find(String commandString, int length) {
+	    for (final Command command : COMMANDS) {
+		if ((command.name().length() == length)
+			&& (commandString.regionMatches(true, 0, command.name(), 0, length))) {
+		    return command;
+		}
+	    }
+	    return null;
+	}
+    }
     
     /**
      * Sets up the user and adds their character to the game
      * @param game GameLogic the game for the user to interact with
      */
     public User(GameLogic game){
+    	this(game, null);
+    }
+    
+    /**
+     * Sets up the user and adds their character to a game of a lobby
+     * @param game GameLogic the game for the user to interact with first
+     * @param lobby GameLobby the games the user can move between, null if there is only one game
+     */
+    public User(GameLogic game, GameLobby lobby){
     	this.game = game;
+    	this.lobby = lobby;
 
     	// Ensures that the instance will listen to the player in the
-    	// game for messages from the game
-    	userID = game.addPlayer(this);
+    	// game for messages from the game, this waits for the game to add the player
+    	userID = game.call(new Callable<Integer>(){
+    		@Override
+    		public Integer call()
+    		{
+    			return User.this.game.addPlayer(User.this);
+    		}
+    	});
     	this.didUserWin = false;
     	this.goalSent = false;
     }
@@ -49,6 +146,16 @@ public abstract class User implements PlayerListener{
 	outputMessage(message);
     }
     
+    /**
+     * Sends a message that every player is being sent, by default it is sent like any other message
+     * 
+     * @param broadcast The message to be sent
+     */
+    @Override
+    public void sendBroadcast(Broadcast broadcast) {
+	outputMessage(broadcast.getMessage());
+    }
+    
     /**
      * Informs the user of the beginning of a player's turn
      */
@@ -74,6 +181,31 @@ public abstract class User implements PlayerListener{
 	this.didUserWin=true;
     }
 
+    /**
+     * Informs the user that the game has ended.
+     * Local users are told through the win message so nothing is done by default
+     */
+    @Override
+    public void gameOver() {
+    }
+
+    /**
+     * Informs the user that everyone died and the game has started again without them,
+     * users of a lobby can join a game to play again
+     */
+    @Override
+    public void gameRestarted() {
+	this.userID = NO_PLAYER;
+	if (lobby != null)
+	{
+		outputMessage("DIE The game has restarted, JOIN a game to play again");
+	}
+	else
+	{
+		outputMessage("DIE The game has restarted");
+	}
+    }
+
     /**
      * Informs the user that the player's hit points have changed
      */
@@ -105,27 +237,109 @@ public abstract class User implements PlayerListener{
      */
     @Override
     public void look() {
-    	outputMessage("LOOKREPLY" + System.getProperty("line.separator")
-    		    + this.game.clientLook(this.userID) + "ENDLOOKREPLY");
+    	//The buffers are reused by every look, looks are only made by the game's command queue
+    	lookView.setLength(0);
+    	this.game.appendLook(this.userID, lookView);
+    	
+    	lookReply.setLength(0);
+    	//A delta can only be sent if the client has the last look and the view is the same size
+    	if ((deltaLooks) && (lookView.length() == lastLookView.length()))
+    	{
+    		appendLookDelta();
+    	}
+    	else
+    	{
+    		lookReply.append("LOOKREPLY").append(LINE_SEPARATOR);
+    		lookReply.append(lookView);
+    		lookReply.append("ENDLOOKREPLY");
+    	}
+    	
+    	//This look becomes the one the next look is compared with
+    	StringBuilder sentView = lookView;
+    	lookView = lastLookView;
+    	lastLookView = sentView;
+    	
+    	//The reply is passed on without being copied to a string, it is copied by the user before this returns
+    	outputMessage(lookReply);
+    }
+    
+    /**
+     * Adds the rows of the look that differ from the last look to the reply.
+     * Each changed row is sent as its index, counted from 0 at the top, followed by a space and the row,
+     * the delta is still sent if nothing has changed so the client knows the look is up to date.
+     */
+    private void appendLookDelta() {
+    	lookReply.append("LOOKDELTA").append(LINE_SEPARATOR);
+    	
+    	//Every row is the same length as the view is square
+    	final int rowLength = lookView.indexOf(LINE_SEPARATOR) + LINE_SEPARATOR.length();
+    	int row = 0;
+    	for (int rowStart = 0; rowStart < lookView.length(); rowStart += rowLength)
+    	{
+    		if (!isRowUnchanged(rowStart, rowLength))
+    		{
+    			lookReply.append(row).append(' ');
+    			lookReply.append(lookView, rowStart, rowStart + rowLength);
+    		}
+    		row++;
+    	}
+    	lookReply.append("ENDLOOKDELTA");
+    }
+    
+    /**
+     * @param rowStart int the index of the start of the row in the views
+     * @param rowLength int the length of the row
+     * @return boolean true if the row is the same as it was in the last look
+     */
+    private boolean isRowUnchanged(int rowStart, int rowLength) {
+    	for (int index = rowStart; index < rowStart + rowLength; index++)
+    	{
+    		if (lookView.charAt(index) != lastLookView.charAt(index))
+    		{
+    			return false;
+    		}
+    	}
+    	return true;
     }
     
     /**
      * Processes a text command from the user.
+     * The command is queued on the game and run in turn with the commands of every other user,
+     * so this returns before the command has been run.
      * 
      * @param commandString
      *            the string containing the command and any argument
      */
-    protected final void processCommand(String commandString) {
-    	
-    	
-	// converts to uppercase
-	commandString = commandString.toUpperCase();
-
+    protected final void processCommand(final String commandString) {
+    	final GameLogic commandGame = game;
+    	commandGame.submit(new Runnable(){
+    		@Override
+    		public void run()
+    		{
+    			if (commandGame != game)
+    			{
+    				//The user has joined another game since the command was given
+    				processCommand(commandString);
+    				return;
+    			}
+    			runCommand(commandString);
+    		}
+    	});
+    }
+    
+    /**
+     * Runs a text command from the user, this must be run on the game's command queue
+     * 
+     * @param commandString
+     *            the string containing the command and any argument
+     */
+    private void runCommand(String commandString) {
 	// Process the command string e.g. MOVE N
-	final String commandStringSplit[] = commandString.split(" ", 2);
-	final String command = commandStringSplit[0];
-	final String arg = ((commandStringSplit.length == 2) ? commandStringSplit[1]
-		: null);
+	// The command is found without copying it, only the argument is converted to uppercase
+	final int argStart = commandString.indexOf(' ');
+	final Command command = Command.find(commandString,
+		(argStart < 0) ? commandString.length() : argStart);
+	final String arg = ((argStart < 0) ? null : commandString.substring(argStart + 1).toUpperCase());
 
 	try {
 	    processCommandAndArgument(command, arg);
@@ -139,14 +353,29 @@ public abstract class User implements PlayerListener{
      * This has been partially modified by Benjamin Dring
      * 
      * @param command
-     *            the text command
+     *            the command, null if it isn't a known command
      * @param arg
      *            the text argument (null if no argument)
      * @throws CommandException
      */
-    private void processCommandAndArgument(String command, String arg)
+    private void processCommandAndArgument(Command command, String arg)
 	    throws CommandException {
-	if (command.equals("HELLO")) {
+	//The lobby commands are unknown when there is no lobby
+	if ((command == null) || ((command.needsLobby) && (lobby == null))) {
+	    // A bad command is only reported once it is the user's turn, as it always has been
+	    assertUsersTurn();
+	    throw new CommandException("invalid command");
+	}
+	//A user without a player can only use the lobby commands, which are how they get a player again
+	if ((userID == NO_PLAYER) && (!command.needsLobby)) {
+	    throw new CommandException("you are not in a game");
+	}
+	if (command.needsTurn) {
+	    assertUsersTurn();
+	}
+	
+	switch (command) {
+	case HELLO:
 	    if (arg == null) {
 		throw new CommandException("HELLO needs an argument");
 	    }
@@ -155,10 +384,11 @@ public abstract class User implements PlayerListener{
 	    //Gives a name if the name string is empty
 	    if (name.replace(" ", "").equals(""))
 	    {
-	    	name = "Player " + (++autoAsignPlayerNumber);
+	    	name = "Player " + autoAsignPlayerNumber.incrementAndGet();
 	    }
 	    
 	    this.game.clientHello(name, userID);
+	    this.name = name;
 	    outputMessage("HELLO " + name);
 	    if (!goalSent)
 	    {
@@ -173,86 +403,112 @@ public abstract class User implements PlayerListener{
 	    }
 	    //Informs everyone the user has joines
 	    this.game.sendToAll(name + " has joined the game.");
-	} 
-	else if (command.equals("LOOK")) {
+	    break;
+	
+	case LOOK:
 	    if (arg != null) {
 		throw new CommandException("LOOK does not take an argument");
 	    }
-	    game.lookAll();
-
-	}
-	else if (command.equals("DIE"))
-	{
+	    game.requestLook(userID);
+	    break;
+	
+	case DIE:
+		//The look is asked for first as the user has no player if their death restarts the game
+		game.requestLook(userID);
 		game.die(userID);
-		game.lookAll();
-	}
+		break;
 	
-	else if (command.equals("SHOUT")) {
+	case CAPABILITY:
+	    if (arg == null) {
+		throw new CommandException("CAPABILITY needs an argument");
+	    }
+	    if (this.name == null) {
+		throw new CommandException("CAPABILITY must be sent after HELLO");
+	    }
+	    final String capability = arg.trim();
+	    if (capability.equals(LOOK_DELTA_CAPABILITY)) {
+		//The next look is sent in full as the client may not have the last one
+		deltaLooks = true;
+		lastLookView.setLength(0);
+	    }
+	    else if (capability.equals(SUCCESS_CAPABILITY)) {
+		successReplies = true;
+	    }
+	    else {
+		throw new CommandException("unsupported capability");
+	    }
+	    outputMessage("CAPABILITY " + capability);
+	    break;
+	
+	case GAMES:
+	    if (arg != null) {
+		throw new CommandException("GAMES does not take an argument");
+	    }
+	    outputGameList();
+	    break;
+	
+	case JOIN:
+	    if (arg == null) {
+		throw new CommandException("JOIN needs the name of a game");
+	    }
+	    joinGame(arg.trim());
+	    break;
+	
+	case SHOUT:
 	    // Ensure they have given us something to shout.
 	    if (arg == null) {
 		throw new CommandException("need something to shout");
 	    }
 
 	    this.game.clientShout(sanitiseMessage(arg), this.userID);
-
-	}
-	
-	/**
-	 * @author Benjamin Dring
-	 * Makes sure that it is currently the user's turn if it isn't it throws an exception
-	 */
-	else if(!game.hasGameStarted())
-	{
-		throw new CommandException("Game has not started");
-	}
-	else if (!game.isPlayerTurn(userID))
-    {
-    	throw new CommandException("It is not your turn");
-    }
-	/**
-	 * End of work by Benjamin Dring
-	 */
+	    break;
     	
-	 else if (command.equals("PICKUP")) {
+	case PICKUP:
 	    if (arg != null) {
 		throw new CommandException("PICKUP does not take an argument");
 	    }
 	    this.game.clientPickup();
-	    game.lookAll();
+	    game.requestLook(userID);
 	    outputSuccess();
+	    break;
 
-	} else if (command.equals("MOVE")) {
+	case MOVE:
 	    // We need to know which direction to move in.
 	    if (arg == null) {
 		throw new CommandException("MOVE needs a direction");
 	    }
 
 	    this.game.clientMove(getDirection(arg));
-	    game.lookAll();
+	    game.requestLook(userID);
 	    outputSuccess();
+	    break;
 
-	} else if (command.equals("ATTACK")) {
+	case ATTACK:
 	    // We need to know which direction to move in.
 	    if (arg == null) {
 		throw new CommandException("ATTACK needs a direction");
 	    }
 
 	    this.game.clientAttack(getDirection(arg));
-	    game.lookAll();
+	    game.requestLook(userID);
 	    outputSuccess();
+	    break;
 	    
-	} else if (command.equals("GIFT")) {
+	case GIFT:
 		if (arg == null) {
 		throw new CommandException("ATTACK needs a direction");
 		}
 
 		this.game.clientGift(getDirection(arg));
+		game.requestLook(userID);
 		outputSuccess();
+		break;
 	    
-	} else if (command.equals("ENDTURN")) {
+	case ENDTURN:
 	    this.game.newTurn();
+	    break;
 
-	}  else if (command.equals("SETPLAYERPOS")) {
+	case SETPLAYERPOS:
 	    if (arg == null) {
 		throw new CommandException("need a position");
 	    }
@@ -269,20 +525,124 @@ public abstract class User implements PlayerListener{
 		final int row = Integer.parseInt(coordinates[1]);
 
 		this.game.setPlayerPosition(col, row);
-		game.lookAll();
+		game.requestLook(userID);
 		outputSuccess();
 	    } catch (final NumberFormatException e) {
 		throw new CommandException("co-ordinates must be integers");
 	    }
-
-	} else {
-	    // If it is none of the above then it must be a bad command.
-	    throw new CommandException("invalid command");
+	    break;
 	}
     }
     
+    /**
+     * @author Benjamin Dring
+     * Makes sure that it is currently the user's turn if it isn't it throws an exception
+     * @throws CommandException
+     */
+    private void assertUsersTurn() throws CommandException {
+	if(!game.hasGameStarted())
+	{
+		throw new CommandException("Game has not started");
+	}
+	else if (!game.isPlayerTurn(userID))
+    {
+    	throw new CommandException("It is not your turn");
+    }
+    }
+    
 
 
+    /**
+     * Sends the names of the lobby's games, the game the user is in is marked with a *
+     */
+    private void outputGameList() {
+    	List<String> gameNames = lobby.getGameNames();
+    	String gameList = "GAMES";
+    	for (String gameName : gameNames)
+    	{
+    		gameList += " " + gameName;
+    		if (lobby.getGame(gameName) == game)
+    		{
+    			gameList += "*";
+    		}
+    	}
+    	outputMessage(gameList);
+    }
+    
+    /**
+     * Leaves the current game and joins another game of the lobby.
+     * The user's player is killed in the game they leave and a new player is added to the game they join,
+     * the join is queued on the new game so this returns before it has happened.
+     * @param gameName String the name of the game to join
+     * @throws CommandException if there isn't a game with that name or the user is already in it
+     */
+    private void joinGame(final String gameName) throws CommandException {
+    	final GameLogic newGame;
+    	try {
+    		newGame = lobby.getGame(gameName);
+    	} catch (final IllegalArgumentException e) {
+    		throw new CommandException(e.getMessage());
+    	}
+    	if (newGame == null) {
+    		throw new CommandException("there is no game called " + gameName);
+    	}
+    	//A user whose game restarted without them can join it again
+    	if ((newGame == game) && (userID != NO_PLAYER)) {
+    		throw new CommandException("already in that game");
+    	}
+    	
+    	//The old game forgets the user before the new game hears of them
+    	if (userID != NO_PLAYER) {
+    		this.game.leave(userID);
+    		this.game.sendToAll(getDisplayName() + " has left the game.");
+    	}
+    	
+    	//Commands given from now on are sent to the new game, after the join
+    	newGame.submit(new Runnable(){
+    		@Override
+    		public void run()
+    		{
+    			enterGame(newGame, gameName);
+    		}
+    	});
+    	this.game = newGame;
+    }
+    
+    /**
+     * Adds the user to a new game, this must be run on the new game's command queue
+     * @param newGame GameLogic the game being joined
+     * @param gameName String the name of the game being joined
+     */
+    private void enterGame(GameLogic newGame, String gameName) {
+    	this.userID = newGame.addPlayer(this);
+    	this.didUserWin = false;
+    	//The name is kept from the last game
+    	if (name != null)
+    	{
+    		try {
+    			newGame.clientHello(name, userID);
+    		} catch (final CommandException e) {
+    			//The new player has never been named so this can't happen
+    		}
+    	}
+    	outputMessage("JOINED " + gameName);
+    	//Goals are different between maps so it is always sent again
+    	this.goalSent = true;
+    	outputMessage("GOAL " + newGame.getGoal());
+    	if ((newGame.isPlayerTurn(userID)) && (newGame.hasGameStarted()))
+    	{
+    		startTurn();
+    	}
+    	newGame.sendToAll(getDisplayName() + " has joined the game.");
+    }
+    
+    /**
+     * @return String the name given by the user, or a placeholder if they haven't given one
+     */
+    private String getDisplayName() {
+    	return (name == null) ? "A player" : name;
+    }
+    
     /**
      * Obtains a compass direction from a string. Used to ensure the correct
      * exception type is thrown, and for consistency between MOVE and ATTACK.
@@ -311,46 +671,76 @@ public abstract class User implements PlayerListener{
      * @return The sanitised message
      */
     private static String sanitiseMessage(String s) {
-	return sanitise(s, "[a-zA-Z0-9-_ \\.,:!\\(\\)#]");
+	return sanitise(s, MESSAGE_CHARACTERS);
     }
 
     /**
-     * Strip out anything that isn't in the specified regex.
+     * Strip out anything that isn't allowed by the given table.
+     * The message is returned as it is when there is nothing to strip out.
      * 
      * @param s
      *            The string to be sanitised
-     * @param regex
-     *            The regex to use for sanitisiation
+     * @param allowed
+     *            The characters that are kept, indexed by character
      * @return The sanitised string
      */
-    private static String sanitise(String s, String regex) {
-	String rv = "";
+    private static String sanitise(String s, boolean[] allowed) {
+	StringBuilder rv = null; // Only made once a character has been stripped
 
 	for (int i = 0; i < s.length(); i++) {
-	    final String tmp = s.substring(i, i + 1);
+	    final char tmp = s.charAt(i);
+	    final boolean keep = (tmp < allowed.length) && (allowed[tmp]);
 
-	    if (tmp.matches(regex)) {
-		rv += tmp;
+	    if ((!keep) && (rv == null)) {
+		rv = new StringBuilder(s.length());
+		rv.append(s, 0, i);
+	    } else if ((keep) && (rv != null)) {
+		rv.append(tmp);
 	    }
 	}
 
-	return rv;
+	return (rv == null) ? s : rv.toString();
+    }
+
+    /**
+     * Makes a table of the characters that can be used in messages,
+     * these are the same as the regular expression [a-zA-Z0-9-_ \.,:!\(\)#]
+     * 
+     * @return The table indexed by character, true if the character is allowed
+     */
+    private static boolean[] createMessageCharacters() {
+	final boolean[] allowed = new boolean[128];
+	for (char c = 'a'; c <= 'z'; c++) {
+	    allowed[c] = true;
+	}
+	for (char c = 'A'; c <= 'Z'; c++) {
+	    allowed[c] = true;
+	}
+	for (char c = '0'; c <= '9'; c++) {
+	    allowed[c] = true;
+	}
+	for (final char c : "-_ .,:!()#".toCharArray()) {
+	    allowed[c] = true;
+	}
+	return allowed;
     }
     
     /**
-     * Sends a success message in the event that a command has succeeded
+     * Sends a success message in the event that a command has succeeded, only to clients that have asked for them.
+     * It is sent before the look the command asked for, which is only sent once the command has finished.
      */
     private void outputSuccess() {
-    	//I chose to remove this
-    	//outputMessage("SUCCESS");
+    	if (successReplies) {
+    		outputMessage("SUCCESS");
+    	}
     }
     
     /**
      * Outputs a message to the user .
      * Abstract method was made by Benjamin Dring.
-     * @param message the message to be out put
+     * @param message the message to be out put, it may be a buffer that is reused so it must be copied before returning
      */
-    abstract protected void outputMessage(String message);
+    abstract protected void outputMessage(CharSequence message);
     
     /**
      * Works out if the game is over if it is then messages are sent informing the user so
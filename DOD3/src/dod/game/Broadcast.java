@@ -0,0 +1,49 @@
+package dod.game;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * A message sent to every player at once, such as a shout.
+ * It is encoded the first time a connection needs it and that encoding is shared by every connection,
+ * so a broadcast costs the same to encode however many players hear it.
+ * @author Benjamin Dring
+ */
+public class Broadcast {
+	//Messages are sent as lines using the platform defaults, as the protocol always has
+	private static final Charset CHARSET = Charset.defaultCharset();
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+	private final String message;
+	private ByteBuffer encoded; //The message as a line of bytes, made when it is first needed
+
+	/**
+	 * @param message String the message to be sent
+	 */
+	public Broadcast(String message)
+	{
+		this.message = message;
+	}
+
+	/**
+	 * @return String the message to be sent
+	 */
+	public String getMessage()
+	{
+		return this.message;
+	}
+
+	/**
+	 * Gets the message encoded as a line, ready to be written to a connection.
+	 * Each caller is given a view of its own, so they can each be written at their own pace without copying the bytes.
+	 * @return ByteBuffer a read only view of the encoded line
+	 */
+	public synchronized ByteBuffer getEncoded()
+	{
+		if (encoded == null)
+		{
+			encoded = ByteBuffer.wrap((message + LINE_SEPARATOR).getBytes(CHARSET)).asReadOnlyBuffer();
+		}
+		return encoded.duplicate();
+	}
+}
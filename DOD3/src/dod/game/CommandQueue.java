@@ -0,0 +1,174 @@
+package dod.game;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A queue of commands that are run one at a time, in the order they were given, whichever thread gave them.
+ * Each game owns one of these so that only one thread ever changes the game at once, without the game needing locks.
+ * The commands are run by an underlying executor, which may be shared by many queues.
+ * @author Benjamin Dring
+ */
+public class CommandQueue implements Executor {
+	//The most commands run in one go before the thread is given back to the executor
+	private static final int BATCH_SIZE = 64;
+
+	private final Executor executor; //Runs the commands
+	private final ConcurrentLinkedQueue<Runnable> commands; //Commands waiting to be run
+	private final AtomicBoolean scheduled; //Indicates the queue has been given to the executor
+	private volatile Thread runningThread; //The thread currently running the commands, if any
+
+	//Runs the waiting commands
+	private final Runnable drainer = new Runnable(){
+		@Override
+		public void run()
+		{
+			drain();
+		}
+	};
+
+	/**
+	 * Creates a queue with a thread of its own
+	 */
+	public CommandQueue()
+	{
+		this(Executors.newSingleThreadExecutor(new ThreadFactory(){
+			@Override
+			public Thread newThread(Runnable task)
+			{
+				Thread thread = new Thread(task, "Game commands");
+				//The game thread shouldn't keep the program alive on its own
+				thread.setDaemon(true);
+				return thread;
+			}
+		}));
+	}
+
+	/**
+	 * Creates a queue that runs its commands using a given executor
+	 * @param executor Executor the executor to run the commands, it may be shared with other queues
+	 */
+	public CommandQueue(Executor executor)
+	{
+		this.executor = executor;
+		this.commands = new ConcurrentLinkedQueue<Runnable>();
+		this.scheduled = new AtomicBoolean(false);
+	}
+
+	/**
+	 * Adds a command to the end of the queue, this returns without waiting for the command to run
+	 * @param command Runnable the command to be run
+	 */
+	@Override
+	public void execute(Runnable command)
+	{
+		commands.add(command);
+		schedule();
+	}
+
+	/**
+	 * Runs a command on the queue and waits for its result.
+	 * If this is called by a command already on the queue it is run straight away, as waiting would never end.
+	 * @param command Callable the command to be run
+	 * @return the result of the command
+	 */
+	public <T> T call(Callable<T> command)
+	{
+		if (isRunningCommand())
+		{
+			try
+			{
+				return command.call();
+			}
+			catch (RuntimeException e)
+			{
+				throw e;
+			}
+			catch (Exception e)
+			{
+				throw new IllegalStateException(e);
+			}
+		}
+
+		FutureTask<T> task = new FutureTask<T>(command);
+		execute(task);
+		try
+		{
+			return task.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while waiting for the game");
+		}
+		catch (ExecutionException e)
+		{
+			//Exceptions from the command are passed on as they are
+			if (e.getCause() instanceof RuntimeException)
+			{
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * @return boolean true if the calling thread is running a command from this queue
+	 */
+	public boolean isRunningCommand()
+	{
+		return (runningThread == Thread.currentThread());
+	}
+
+	/**
+	 * Gives the queue to the executor unless it has been already
+	 */
+	private void schedule()
+	{
+		if (scheduled.compareAndSet(false, true))
+		{
+			executor.execute(drainer);
+		}
+	}
+
+	/**
+	 * Runs a batch of the waiting commands and then gives the queue back to the executor if there are any left
+	 */
+	private void drain()
+	{
+		runningThread = Thread.currentThread();
+		try
+		{
+			Runnable command;
+			int commandsRun = 0;
+			while ((commandsRun++ < BATCH_SIZE) && ((command = commands.poll()) != null))
+			{
+				try
+				{
+					command.run();
+				}
+				catch (RuntimeException e)
+				{
+					//A broken command must not stop the commands after it
+					System.out.println("Game command failed: " + e);
+				}
+			}
+		}
+		finally
+		{
+			runningThread = null;
+			scheduled.set(false);
+		}
+		//Commands may have been added since we stopped looking
+		if (!commands.isEmpty())
+		{
+			schedule();
+		}
+	}
+}
@@ -3,7 +3,11 @@ package dod.game;
 import java.io.FileNotFoundException;
 import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 import dod.GUI.ClientListener;
 import dod.game.items.Armour;
@@ -14,9 +18,19 @@ import dod.game.items.Sword;
  * This class controls the game logic and other such magic.
  * 
  * This has been modified by Benjamin Dring. It's important to note that all player threads have the same object of this class.
+ * 
+ * The game is changed by only one thread at a time: every method that reads or changes the state of the game
+ * must be run as a command on the game's queue, using submit() or call(), rather than being called directly.
+ * 
+ * Tiles that change during a command are recorded, once a submitted command has finished
+ * looks are only sent to the players that can see one of those tiles or have asked for a look.
  */
 public class GameLogic {
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+    
     Map map;
+    
+    private final String mapFile; //The file the map is loaded from, it is loaded again when the game restarts
 
     // Has a player won already?
     private boolean playerWon;
@@ -26,10 +40,26 @@ public class GameLogic {
     // current player
     private Player player;
     
-    //The following three variables have been implemented by Benjamin Dring
+    //The following two variables have been implemented by Benjamin Dring
     private ArrayList<Player> playerList; //This is the list of all players
     int currentPlayerIndex; //The index in playerList of the current player
-    private boolean turnSwitch; //Used to lock the class from being accessed during transfer of turns
+    
+    private OccupancyGrid occupancy; //The living player on each tile, kept up to date as players move and die
+    
+    //The tiles that have changed since looks were last sent, stored as pairs of columns and rows
+    private int[] changedCols;
+    private int[] changedRows;
+    private int changedCount;
+    private BitSet lookRequests; //The userIDs of players who have asked for a look
+    
+    private final CommandQueue commandQueue; //Every command that changes the game is run through this
+    
+    private final long seed; //The seed every random choice in the game comes from
+    private final SplittableRandom random; //Used by the game's commands only, so it needs no locking
+    private final SplittableRandom streamSource; //Split to give others, such as bots, random streams of their own
+    
+    //Run at the end of the current command, only used by the game's commands so it needs no locking
+    private final ArrayList<Runnable> afterCommandTasks = new ArrayList<Runnable>();
     
     private ClientListener serverListener; //For any server listening to this GameLogic //This can be null
     
@@ -45,15 +75,7 @@ public class GameLogic {
      */
     public GameLogic(String mapFile) throws FileNotFoundException,
 	    ParseException {
-	this.map = new Map(mapFile);
-	this.serverListener = null;
-	setUpAttributes();
-	
-	// Check if there is enough gold to win
-	if (this.map.remainingGold() < this.map.getGoal()) {
-	    throw new IllegalStateException(
-		    "There isn't enough gold on this map for you to win");
-	}
+	this(mapFile, null);
     }
     
     /**
@@ -68,8 +90,185 @@ public class GameLogic {
     public GameLogic(String mapFile, ClientListener serverListener)throws FileNotFoundException,
     ParseException
     {
-    	this(mapFile);
-    	this.serverListener = serverListener;
+    	this(mapFile, serverListener, new CommandQueue(), defaultSeed());
+    }
+    
+    /**
+     * Constructor that specified the map, a listener and the executor that runs the game's commands
+     * 
+     * @param mapFile The name of the file to be loaded from.
+     * @param serverListener The listener to relay global messages to, this can be null
+     * @param executor The executor that runs the commands, it may be shared with other games
+     * @throws FileNotFoundException
+     * @throws ParseException
+     */
+    public GameLogic(String mapFile, ClientListener serverListener, Executor executor)throws FileNotFoundException,
+    ParseException
+    {
+    	this(mapFile, serverListener, new CommandQueue(executor), defaultSeed());
+    }
+    
+    /**
+     * Constructor that specified the map, a listener, the executor that runs the game's commands and the seed of its random choices.
+     * Two games given the same seed, map and commands in the same order play out the same way.
+     * 
+     * @param mapFile The name of the file to be loaded from.
+     * @param serverListener The listener to relay global messages to, this can be null
+     * @param executor The executor that runs the commands, it may be shared with other games
+     * @param seed The seed of every random choice made by the game
+     * @throws FileNotFoundException
+     * @throws ParseException
+     */
+    public GameLogic(String mapFile, ClientListener serverListener, Executor executor, long seed)throws FileNotFoundException,
+    ParseException
+    {
+    	this(mapFile, serverListener, new CommandQueue(executor), seed);
+    }
+    
+    /**
+     * Sets up the game using a given command queue
+     * 
+     * @param mapFile The name of the file to be loaded from.
+     * @param serverListener The listener to relay global messages to, this can be null
+     * @param commandQueue The queue that runs the game's commands
+     * @param seed The seed of every random choice made by the game
+     * @throws FileNotFoundException
+     * @throws ParseException
+     */
+    private GameLogic(String mapFile, ClientListener serverListener, CommandQueue commandQueue, long seed)throws FileNotFoundException,
+    ParseException
+    {
+	this.map = new Map(mapFile);
+	this.mapFile = mapFile;
+	this.serverListener = serverListener;
+	this.commandQueue = commandQueue;
+	this.seed = seed;
+	this.random = new SplittableRandom(seed);
+	this.streamSource = random.split();
+	setUpAttributes();
+	
+	// Check if there is enough gold to win
+	if (this.map.remainingGold() < this.map.getGoal()) {
+	    throw new IllegalStateException(
+		    "There isn't enough gold on this map for you to win");
+	}
+    }
+    
+    /**
+     * Picks the seed for a game that wasn't given one, the system property dod.game.seed fixes it so games can be replayed
+     * 
+     * @return the seed
+     */
+    private static long defaultSeed()
+    {
+    	Long fixedSeed = Long.getLong("dod.game.seed");
+    	if (fixedSeed != null)
+    	{
+    		return fixedSeed;
+    	}
+    	return new SplittableRandom().nextLong();
+    }
+    
+    /**
+     * @return the seed every random choice in this game comes from, giving it to a new game replays this one
+     */
+    public long getSeed()
+    {
+    	return this.seed;
+    }
+    
+    /**
+     * Creates a random stream of its own for something taking part in this game, such as a bot.
+     * The streams are split from the game's seed so they are the same each time the game is replayed,
+     * as long as they are asked for in the same order.
+     * The stream returned must only be used by one thread.
+     * 
+     * @return a new random stream
+     */
+    public SplittableRandom splitRandom()
+    {
+    	synchronized (streamSource)
+    	{
+    		return streamSource.split();
+    	}
+    }
+    
+    /**
+     * Adds a command to the game's queue, it will be run after every command given before it.
+     * This returns straight away, anything the command says to the players is sent to them when it runs.
+     * 
+     * @param command The command to be run
+     */
+    public void submit(final Runnable command)
+    {
+    	commandQueue.execute(new Runnable(){
+    		@Override
+    		public void run()
+    		{
+    			try
+    			{
+    				command.run();
+    			}
+    			finally
+    			{
+    				//Looks are sent once for everything the command changed
+    				lookChanged();
+    				//Anything held back until the end of the command, such as the players' output, is done last
+    				runAfterCommandTasks();
+    			}
+    		}
+    	});
+    }
+    
+    /**
+     * Runs a task once the command being run has finished and its looks have been sent.
+     * Users hold back what a command says to them until then so it can be sent in one go.
+     * This must be called from one of the game's submitted commands.
+     * 
+     * @param task The task to be run
+     */
+    public void runAfterCommand(Runnable task)
+    {
+    	afterCommandTasks.add(task);
+    }
+    
+    /**
+     * @return true if the calling thread is running one of the game's commands
+     */
+    public boolean isRunningCommand()
+    {
+    	return commandQueue.isRunningCommand();
+    }
+    
+    /**
+     * Runs the tasks waiting for the end of the command
+     */
+    private void runAfterCommandTasks()
+    {
+    	try
+    	{
+    		for (int index = 0; index < afterCommandTasks.size(); index++)
+    		{
+    			afterCommandTasks.get(index).run();
+    		}
+    	}
+    	finally
+    	{
+    		afterCommandTasks.clear();
+    	}
+    }
+    
+    /**
+     * Runs a command on the game's queue and waits for it to finish.
+     * Looks are not sent after these commands as the caller may not be ready for them,
+     * anything changed is sent after the next submitted command.
+     * 
+     * @param command The command to be run
+     * @return the result of the command
+     */
+    public <T> T call(Callable<T> command)
+    {
+    	return commandQueue.call(command);
     }
     
     /**
@@ -80,8 +279,12 @@ public class GameLogic {
     	this.playerWon = false;
     	this.gameOver = false;
     	this.playerList = new ArrayList<Player>();
+    	this.occupancy = new OccupancyGrid(this.map);
+    	this.changedCols = new int[8];
+    	this.changedRows = new int[8];
+    	this.changedCount = 0;
+    	this.lookRequests = new BitSet();
     	this.currentPlayerIndex = 0;
-    	this.turnSwitch = false;
     	this.gameStarted = false;
     }
 
@@ -98,8 +301,12 @@ public class GameLogic {
     public int addPlayer(PlayerListener listener) {
     	
     	//creates the player
-    	playerList.add(new Player("Player 0", generateRandomStartLocation(),
+    	final Location startLocation = generateRandomStartLocation();
+    	playerList.add(new Player("Player 0", startLocation,
 		listener));
+    	occupancy.place(playerList.size() - 1, startLocation);
+    	markChanged(startLocation);
+    	requestLook(playerList.size() - 1);
     	
     	//If this is the only player then set it as the current player
 		if (playerList.size() == 1)
@@ -150,76 +357,86 @@ public class GameLogic {
      * @return the part of the map that the player can currently see.
      */
     public String clientLook(int playerID) {
+	final StringBuilder lookReply = new StringBuilder();
+	appendLook(playerID, lookReply);
+	return lookReply.toString();
+    }
+
+    /**
+     * Writes the portion of the map that the player can currently see onto
+     * the end of a reply, one row per line. This is the same as clientLook but
+     * lets the caller reuse its buffer, as looks are sent after every action.
+     * Primitive coordinates are used throughout so nothing is created per tile.
+     * 
+     * @param playerID
+     *            the ID of the player looking
+     * @param lookReply
+     *            the buffer the rows are added to
+     */
+    public void appendLook(int playerID, StringBuilder lookReply) {
 	assertPlayerExists();
 	
-	Player lookingPlayer = this.playerList.get(playerID);
+	final Player lookingPlayer = this.playerList.get(playerID);
+	final int playerCol = lookingPlayer.getLocation().getCol();
+	final int playerRow = lookingPlayer.getLocation().getRow();
 	
 	// Work out how far the player can see
 	final int distance = lookingPlayer.lookDistance();
 
-	String lookReply = "";
 	// Iterate through the rows.
 	for (int rowOffset = -distance; rowOffset <= distance; ++rowOffset) {
-	    String line = "";
 
 	    // Iterate through the columns.
 	    for (int colOffset = -distance; colOffset <= distance; ++colOffset) {
-
-		// Work out the location
-		final Location location = lookingPlayer.getLocation().atOffset(
-			colOffset, rowOffset);
-
-		int tilePlayerID = getUserIDOfPlayerOnTile(location);
-		
-		char content = '?';
-		if (!lookingPlayer.canSeeTile(rowOffset, colOffset)) {
-		    // It's outside the FoV so we don't know what it is.
-		    content = 'X';
-		} else if (!this.map.insideMap(location)) {
-		    // It's outside the map, so just call it a wall.
-		    content = '#';
-		//-1 represents there is no player on the tile
-		} else if((tilePlayerID != -1) && ((rowOffset != 0) || (colOffset != 0))){
-			//P is a player on a standard tile
-			//Q is a player on an exit tile
-			//R is a player with armour on a standard tile
-			//K is a player with armour on an exit tile
-			if(this.map.getMapCell(location).toChar() == 'E')
-			{
-				if(playerList.get(tilePlayerID).hasItem(new Armour()))
-				{
-					content = 'K';
-				}
-				else
-				{
-					content = 'Q';
-				}
-			}
-			else
-			{
-				if(playerList.get(tilePlayerID).hasItem(new Armour()))
-				{
-					content = 'R';
-				}
-				else
-				{
-					content = 'P';
-				}
-			}
-		} else {
-		    // Look up and see what's on the map
-		    content = this.map.getMapCell(location).toChar();
-		}
-
-		// Add to the line
-		line += content;
+		lookReply.append(lookContent(lookingPlayer, distance,
+			playerCol + colOffset, playerRow + rowOffset, colOffset, rowOffset));
 	    }
 
-	    // Send a line of the look message
-	    lookReply += line + System.getProperty("line.separator");
+	    // End a line of the look message
+	    lookReply.append(LINE_SEPARATOR);
 	}
+    }
 
-	return lookReply;
+    /**
+     * Works out what a player sees on a single tile of their look
+     * 
+     * @param lookingPlayer the player looking
+     * @param distance the look distance of the player
+     * @param col the column of the tile
+     * @param row the row of the tile
+     * @param colOffset the column of the tile relative to the player
+     * @param rowOffset the row of the tile relative to the player
+     * @return the character shown for the tile
+     */
+    private char lookContent(Player lookingPlayer, int distance, int col, int row,
+	    int colOffset, int rowOffset) {
+	if (!lookingPlayer.canSeeTile(rowOffset, colOffset, distance)) {
+	    // It's outside the FoV so we don't know what it is.
+	    return 'X';
+	}
+	if (!this.map.insideMap(col, row)) {
+	    // It's outside the map, so just call it a wall.
+	    return '#';
+	}
+	
+	final Tile tile = this.map.getMapCell(col, row);
+	//-1 represents there is no player on the tile
+	final int tilePlayerID = occupancy.getUserID(col, row);
+	if ((tilePlayerID != -1) && ((rowOffset != 0) || (colOffset != 0))) {
+		//P is a player on a standard tile
+		//Q is a player on an exit tile
+		//R is a player with armour on a standard tile
+		//K is a player with armour on an exit tile
+		final boolean hasArmour = playerList.get(tilePlayerID).hasItem(Armour.class);
+		if (tile.isExit())
+		{
+			return hasArmour ? 'K' : 'Q';
+		}
+		return hasArmour ? 'R' : 'P';
+	}
+	
+	// Look up and see what's on the map
+	return tile.toChar();
     }
 
     /**
@@ -266,6 +483,9 @@ public class GameLogic {
 	this.player.decrementAp();
 
 	// Move the player
+	occupancy.move(currentPlayerIndex, this.player.getLocation(), location);
+	markChanged(this.player.getLocation());
+	markChanged(location);
 	this.player.setLocation(location);
 
 	// Notify the client of the success
@@ -308,17 +528,16 @@ public class GameLogic {
 	
 	Player victimPlayer = playerList.get(victimUserID);
 	//We randomly decide if it hits
-	Random rand = new Random();
-	if (rand.nextInt(5) < 3) //3 of 4 chance is a hit as 5 is exclusive
+	if (random.nextInt(5) < 3) //3 of 4 chance is a hit as 5 is exclusive
 	{
 		//if it hits we get the victim player from the list
 		short damage = 1;
-		if (this.player.hasItem(new Sword()))
+		if (this.player.hasItem(Sword.class))
 		{
 			//add one for attacker having sword
 			damage++;
 		}
-		if (victimPlayer.hasItem(new Armour()))
+		if (victimPlayer.hasItem(Armour.class))
 		{
 			//minus one for victim having armour
 			damage--;
@@ -337,7 +556,9 @@ public class GameLogic {
 	
 	if(victimPlayer.isDead())
 	{
+		occupancy.remove(victimUserID, victimPlayer.getLocation());
 		map.dropGold(victimPlayer.getLocation());
+		markChanged(victimPlayer.getLocation());
 		this.player.sendMessage("The player has died");
 		victimPlayer.sendMessage("DIE You were killed by a player");
 	}
@@ -351,6 +572,8 @@ public class GameLogic {
      */
     public void clientGift(CompassDirection direction) throws CommandException
     {
+    	assertPlayerAP();
+    	
     	//Gets the location of the given direction
     	final Location location = this.player.getLocation().atCompassDirection(direction);
     	
@@ -388,8 +611,13 @@ public class GameLogic {
     		    
     		    recieverPlayer.win();
     		    this.player.sendMessage("DIE YOU GAVE UP THE GAME");
-    		} 
-    	lookAll();
+    		    announceGameOver();
+    		}
+    	else
+    	{
+    		//Like any other action the turn ends once the ap has been used up
+    		advanceTurn();
+    	}
     }
 
     /**
@@ -421,7 +649,9 @@ public class GameLogic {
 	}
 
 	this.player.giveItem(item);
-	playersTile.removeItem();
+	this.map.removeItem(this.player.getLocation());
+	//The item has gone and the player may look different
+	markChanged(this.player.getLocation());
 	
 	if (item instanceof Armour)
 	{
@@ -462,10 +692,11 @@ public class GameLogic {
     		//Sends server message if it exists
     		serverListener.pushMessage(message);
     	}
-    	//Loops through every player and sends a message
+    	//Loops through every player and hands them the same broadcast, so it is only encoded once
+    	final Broadcast broadcast = new Broadcast(message);
     	for(int userID = 0; userID < playerList.size(); userID++)
     	{
-    		playerList.get(userID).sendMessage(message);
+    		playerList.get(userID).sendBroadcast(broadcast);
     	}
     }
 
@@ -506,6 +737,15 @@ public class GameLogic {
 	    throw new CommandException("cannot walk on this tile");
 	}
 
+	//Two players can't share a tile
+	final int occupantID = occupancy.getUserID(location);
+	if ((occupantID != -1) && (occupantID != currentPlayerIndex)) {
+	    throw new CommandException("can't move into a player");
+	}
+
+	occupancy.move(currentPlayerIndex, this.player.getLocation(), location);
+	markChanged(this.player.getLocation());
+	markChanged(location);
 	this.player.setLocation(location);
     }
 
@@ -523,6 +763,9 @@ public class GameLogic {
      * 
      * This has been modified by Benjamin Dring to consider other players
      * 
+     * The location is picked from the occupancy grid's set of free tiles, so
+     * it is found straight away however crowded the map is.
+     * 
      * @return a random location where a player can start
      */
     private Location generateRandomStartLocation() {
@@ -531,45 +774,20 @@ public class GameLogic {
 		    "There is no free tile available for the player to be placed");
 	}
 
-	while (true) {
-	    // Generate a random location
-	    final Random random = new Random();
-	    final int randomRow = random.nextInt(this.map.getMapHeight());
-	    final int randomCol = random.nextInt(this.map.getMapWidth());
-
-	    final Location location = new Location(randomCol, randomRow);
-	    
-	    //it now checks if the player is on that tile when randomly generating the location
-	    if (this.map.getMapCell(location).isWalkable() && (!isPlayerOnTile(location))) {
-		// If it's not a wall or a player then we can put them there
-		return location;
-	    }
-	}
+	// Any walkable tile without a player can be started on
+	return occupancy.randomFreeLocation(random);
     }
 
     /**
-     * Searches a possible tile to use by the player, i.e. non-wall. The map is
-     * traversed from (0,0) to (maxY,MaxX).
+     * Checks there is a possible tile to use by the player, i.e. non-wall
+     * and not already taken by a player.
      * 
      * This has been modified by Benjamin Dring to consider other players
      * 
      * @return true if there is at least one non-wall location, false otherwise
      */
     private boolean atLeastOneWalkablelLocation() {
-	for (int x = 0; x < this.map.getMapWidth(); x++) {
-	    for (int y = 0; y < this.map.getMapHeight(); y++) {
-	    
-	    	Location location = new Location(x, y);
-	    	
-	    //it now checks to see if there is a player on the location
-		if (this.map.getMapCell(location).isWalkable() && (!isPlayerOnTile(location))) {
-		    // If it's not a wall then we can put them there
-		    return true;
-		}
-	    }
-	}
-
-	return false;
+	return occupancy.hasFreeTile();
     }
 
     /**
@@ -643,13 +861,15 @@ public class GameLogic {
 	    lookAll();
 	    
 	    this.player.win();
+	    announceGameOver();
 
 	} else {
 	    //Now newTurn is called instead for dead players and when there is no Ap left
 	    if (this.player.isDead()) {
+	    	occupancy.remove(currentPlayerIndex, this.player.getLocation());
 	    	map.dropGold(this.player.getLocation());
+	    	markChanged(this.player.getLocation());
 			newTurn();
-	    	lookAll();
 	    }
 	    if (this.player.remainingAp() == 0) {
 	    	newTurn();
@@ -664,29 +884,18 @@ public class GameLogic {
      */
     private boolean isPlayerOnTile(Location location)
     {
-    	//Just translates getUserIDOfPlayerOnTile into a boolean
-    	return (getUserIDOfPlayerOnTile(location) != -1);
+    	return occupancy.isOccupied(location);
     }
     
     /**
      * Gets the User Id of the player on a given location, Dead Players are not condiered here
+     * The occupancy grid is used so this takes the same time however many players there are
      * @param location The location that the player is located
      * @return the userId (list index) of the player on the tile it returns -1 if there is no player on the tile
      */
     private int getUserIDOfPlayerOnTile(Location location)
     {
-    	for (int index = 0; index < playerList.size(); index++)
-    	{
-    		Location playerLocation = playerList.get(index).getLocation();
-    		//checks to see if the player is alive and on the same place
-    		if ((!playerList.get(index).isDead()) && 
-    				(location.getCol() == playerLocation.getCol()) && 
-    				(location.getRow() == playerLocation.getRow()))
-    		{
-    			return index;
-    		}
-    	}
-    	return -1;
+    	return occupancy.getUserID(location);
     }
     
     /**
@@ -696,8 +905,8 @@ public class GameLogic {
      */
     public boolean isPlayerTurn(int userID)
     {
-    	//Players can't act during a turn switch otherwise they may do an action with no AP
-    	return ((userID == currentPlayerIndex) && (!turnSwitch));
+    	//Turns are switched by a single command so players can't act part way through one
+    	return (userID == currentPlayerIndex);
     }
     
 	/**
@@ -708,8 +917,6 @@ public class GameLogic {
     	if(isAlivePlayer())
     	{
     	
-    	turnSwitch = true; //locks the class to prevent accesses, it is implemented in isPlayerTyrn()
-    	
     	// Force the end of turn
     	clientEndTurn();
     	
@@ -728,16 +935,67 @@ public class GameLogic {
     			
     	player = playerList.get(currentPlayerIndex); //player is changed
     	startTurn();
-    	//unlocks class
-    	turnSwitch = false;
+    	//The player is given an up to date look to start their turn with
+    	requestLook(currentPlayerIndex);
     	}
     	else
     	{
-    		setUpAttributes();
+    		restartGame();
+    	}
+    }
+    
+    /**
+     * Sets the game up again once everyone has died.
+     * The map is loaded again as its gold and items have been used up, and the dead players are removed
+     * so the users they belonged to must join again to play. The listener is only told to restart once this is done.
+     */
+    private void restartGame()
+    {
+    	final Map freshMap;
+    	try
+    	{
+    		freshMap = new Map(mapFile);
+    	}
+    	catch (FileNotFoundException e)
+    	{
+    		endUnplayableGame("The map file can no longer be found");
+    		return;
+    	}
+    	catch (ParseException e)
+    	{
+    		endUnplayableGame("The map file is no longer valid: " + e.getMessage());
+    		return;
+    	}
+    	
+    	//The users of the old players are told they are no longer in the game
+    	for (Player oldPlayer : playerList)
+    	{
+    		oldPlayer.gameRestarted();
+    		oldPlayer.detachListener();
+    	}
+    	this.map = freshMap;
+    	this.player = null;
+    	setUpAttributes();
+    	if (serverListener != null)
+    	{
     		serverListener.restartGame();
     	}
     }
     
+    /**
+     * Ends a game that can't be restarted, the players are told it is over and the game is not started again
+     * @param reason Why the game can't be restarted
+     */
+    private void endUnplayableGame(String reason)
+    {
+    	this.gameOver = true;
+    	announceGameOver();
+    	if (serverListener != null)
+    	{
+    		serverListener.pushMessage(reason + ", the game can't be restarted");
+    	}
+    }
+    
     /**
      * Sets a given user's health to 0
      * @param userID The ID of the user to be killed
@@ -745,13 +1003,29 @@ public class GameLogic {
     public void die(int userID)
     {
     	this.playerList.get(userID).kill();
+    	occupancy.remove(userID, this.playerList.get(userID).getLocation());
     	map.dropGold(this.playerList.get(userID).getLocation()); //gold is dropped
+    	markChanged(this.playerList.get(userID).getLocation());
     	if (isPlayerTurn(userID))
     	{
     		newTurn();
     	}
     }
     
+    /**
+     * Removes a user from the game, their player is killed and will no longer pass anything on to them
+     * @param userID The ID of the user leaving
+     */
+    public void leave(int userID)
+    {
+    	Player leavingPlayer = this.playerList.get(userID);
+    	if (!leavingPlayer.isDead())
+    	{
+    		die(userID);
+    	}
+    	leavingPlayer.detachListener();
+    }
+    
     /**
      * Checks to see if there is any living players left if there isn't then the game is ended.
      */
@@ -777,7 +1051,18 @@ public class GameLogic {
     }
     
     /**
-     * Performs the look reply to every player
+     * Informs every player that the game has ended so they can stop waiting on it
+     */
+    private void announceGameOver()
+    {
+    	for (Player player: playerList)
+    	{
+    		player.gameOver();
+    	}
+    }
+    
+    /**
+     * Performs the look reply to every player, whatever has changed
      */
     public void lookAll()
     {
@@ -785,6 +1070,87 @@ public class GameLogic {
     	{
     		player.look();
     	}
+    	//Everyone is up to date so there is nothing left to send
+    	forgetChanges();
+    }
+    
+    /**
+     * Asks for a player to be sent a look once the current command has finished
+     * @param userID The ID of the player
+     */
+    public void requestLook(int userID)
+    {
+    	lookRequests.set(userID);
+    }
+    
+    /**
+     * Performs the look reply to the players who have asked for one or can see a tile that has changed,
+     * this is called after every submitted command so it rarely needs calling directly
+     */
+    public void lookChanged()
+    {
+    	if ((changedCount == 0) && (lookRequests.isEmpty()))
+    	{
+    		return;
+    	}
+    	for (int userID = 0; userID < playerList.size(); userID++)
+    	{
+    		Player lookingPlayer = playerList.get(userID);
+    		if ((lookRequests.get(userID)) || (canSeeChange(lookingPlayer)))
+    		{
+    			lookingPlayer.look();
+    		}
+    	}
+    	forgetChanges();
+    }
+    
+    /**
+     * Records that what is shown on a tile has changed
+     * @param location The tile that has changed
+     */
+    private void markChanged(Location location)
+    {
+    	if (changedCount == changedCols.length)
+    	{
+    		changedCols = Arrays.copyOf(changedCols, changedCount * 2);
+    		changedRows = Arrays.copyOf(changedRows, changedCount * 2);
+    	}
+    	changedCols[changedCount] = location.getCol();
+    	changedRows[changedCount] = location.getRow();
+    	changedCount++;
+    }
+    
+    /**
+     * Checks if a player's look includes any of the changed tiles
+     * @param lookingPlayer The player
+     * @return boolean true if the player can see a changed tile
+     */
+    private boolean canSeeChange(Player lookingPlayer)
+    {
+    	final int distance = lookingPlayer.lookDistance();
+    	final int playerCol = lookingPlayer.getLocation().getCol();
+    	final int playerRow = lookingPlayer.getLocation().getRow();
+    	for (int index = 0; index < changedCount; index++)
+    	{
+    		final int colOffset = changedCols[index] - playerCol;
+    		final int rowOffset = changedRows[index] - playerRow;
+    		//The tile must be inside the square look and not hidden by the field of view
+    		if ((Math.abs(colOffset) <= distance) && (Math.abs(rowOffset) <= distance)
+    				&& (lookingPlayer.canSeeTile(rowOffset, colOffset, distance)))
+    		{
+    			return true;
+    		}
+    	}
+    	return false;
+    }
+    
+    /**
+     * Forgets the changed tiles and look requests once looks have been sent
+     */
+    private void forgetChanges()
+    {
+    	changedCount = 0;
+    	lookRequests.clear();
     }
     
     /**
@@ -801,11 +1167,12 @@ public class GameLogic {
      */
     public void startGame()
     {
+    	//The game is started first as the player may act as soon as they are told it's their turn
+    	this.gameStarted = true;
     	if (player != null)
     	{
     		this.player.startTurn();
     	}
-    	this.gameStarted = true;
     }
 
 }
@@ -0,0 +1,86 @@
+package dod.game;
+
+import java.util.SplittableRandom;
+
+/**
+ * A set of map cells, given by their row-major index, that can be added to, removed from and sampled at random in constant time.
+ * The cells are kept packed at the front of an array and each cell remembers where it is in that array,
+ * so a removed cell is replaced by the last cell rather than the array being searched or shifted.
+ * @author Benjamin Dring
+ */
+class IndexedCellSet {
+	private static final int ABSENT = -1;
+
+	private final int[] cells; //The cells in the set, only the first size entries are used
+	private final int[] positions; //The position of each cell in cells, ABSENT if it isn't in the set
+	private int size;
+
+	/**
+	 * Creates an empty set
+	 * @param cellCount int the number of cells on the map
+	 */
+	public IndexedCellSet(int cellCount)
+	{
+		this.cells = new int[cellCount];
+		this.positions = new int[cellCount];
+		for (int cell = 0; cell < cellCount; cell++)
+		{
+			positions[cell] = ABSENT;
+		}
+		this.size = 0;
+	}
+
+	/**
+	 * Adds a cell to the set, nothing is changed if it is already there
+	 * @param cell int the index of the cell
+	 */
+	public void add(int cell)
+	{
+		if (positions[cell] == ABSENT)
+		{
+			cells[size] = cell;
+			positions[cell] = size;
+			size++;
+		}
+	}
+
+	/**
+	 * Removes a cell from the set, nothing is changed if it isn't there
+	 * @param cell int the index of the cell
+	 */
+	public void remove(int cell)
+	{
+		final int position = positions[cell];
+		if (position != ABSENT)
+		{
+			//The last cell fills the gap
+			final int lastCell = cells[--size];
+			cells[position] = lastCell;
+			positions[lastCell] = position;
+			positions[cell] = ABSENT;
+		}
+	}
+
+	/**
+	 * @return int the number of cells in the set
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Picks a cell from the set, every cell is equally likely
+	 * @param random SplittableRandom the source of the choice
+	 * @return int the index of the cell
+	 * @throws IllegalStateException if the set is empty
+	 */
+	public int sample(SplittableRandom random)
+	{
+		if (size == 0)
+		{
+			throw new IllegalStateException("there are no cells to choose from");
+		}
+		return cells[random.nextInt(size)];
+	}
+}
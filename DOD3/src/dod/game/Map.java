@@ -1,14 +1,28 @@
 package dod.game;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Scanner;
 
+import dod.game.Tile.TileType;
+import dod.game.items.Armour;
 import dod.game.items.GameItem;
 import dod.game.items.Gold;
+import dod.game.items.Health;
+import dod.game.items.Lantern;
+import dod.game.items.Sword;
 
 /**
  * Class containing the map used by the game engine. Allows for reading in ASCII
@@ -17,13 +31,36 @@ import dod.game.items.Gold;
  * You are not responsible for making this more robust - you are only required
  * to perform error checking on the extra code that you write to network the
  * client and server.
+ * 
+ * The tiles are stored as one byte each in a single row-major array, the
+ * lowest two bits hold the tile type and the next three bits hold the item.
+ * getMapCell gives a shared Tile for the byte so no objects are kept per cell.
+ * The gold on the map is counted as the map is loaded and kept up to date
+ * as it is picked up and dropped, so asking for it never needs the map to be
+ * searched.
+ * 
+ * Map files are memory mapped and parsed in a single pass straight into the
+ * byte array, so large maps don't need to be held as lines of text first.
+ * 
+ * Maps can also be saved in a binary format, which is recognised by its magic
+ * number when loaded. After the header the tile bytes are stored exactly as
+ * they are held in memory, so loading is little more than a copy:
+ * 
+ * magic "DODM" (4 bytes), version (1 byte), name length (2 bytes) followed by
+ * the name in UTF-8, goal, width, height and gold count (4 bytes each, big
+ * endian) and then width * height tile bytes in row-major order.
  */
 public class Map {
     // The name of the map
     private String name;
 
-    // The tiles of the map, stored in row-major order, i.e. [row][col]
-    private Tile map[][];
+    // The tiles of the map, stored in row-major order, i.e. [row * width + col]
+    private byte map[];
+    private int width;
+    private int height;
+
+    // The amount of gold lying on the map, kept up to date as it changes
+    private int goldOnMap;
 
     // The number of gold required to win
     private int goal;
@@ -36,6 +73,26 @@ public class Map {
     // Minimum number of lines
     private static final int MINLINES = 3;
 
+    // How tiles are packed into a byte
+    static final int TYPE_MASK = 0x03;
+    static final int ITEM_SHIFT = 2;
+    static final int ITEM_MASK = 0x07;
+
+    // The tile types and items in the order of their codes, item code 0 is no item
+    private static final TileType[] TYPES = { TileType.FLOOR, TileType.WALL,
+	    TileType.EXIT };
+    private static final GameItem[] ITEMS = { null, new Armour(), new Gold(),
+	    new Health(), new Lantern(), new Sword() };
+    static final byte FLOOR_CODE = 0;
+    static final byte GOLD_CODE = 2 << ITEM_SHIFT;
+
+    // The shared tile for every code, null where the code isn't valid
+    private static final Tile[] TILES = createTiles();
+
+    // The start of every binary map file and the version written
+    private static final byte[] BINARY_MAGIC = { 'D', 'O', 'D', 'M' };
+    private static final byte BINARY_VERSION = 1;
+
     /**
      * Creates a map from the file specified. Note that this is not robust...
      * 
@@ -45,37 +102,48 @@ public class Map {
      * @throws FileNotFoundException
      */
     public Map(String filename) throws ParseException, FileNotFoundException {
-	final List<String> lines = readFile(filename);
+	final ByteBuffer file = mapFile(filename);
+
+	// The parser is chosen by the start of the file
+	if (hasBinaryMagic(file)) {
+	    readBinaryMap(file);
+	    return;
+	}
+
+	final String nameLine = readLine(file);
+	final String goalLine = readLine(file);
 
 	// Good programmers always check this...
-	if (lines.size() < MINLINES) {
+	final int linesFound = ((nameLine == null) ? 0 : 1)
+		+ ((goalLine == null) ? 0 : 1) + (file.hasRemaining() ? 1 : 0);
+	if (linesFound < MINLINES) {
 	    throw new ParseException(
 		    "a map file must contain at least three lines",
-		    lines.size());
+		    linesFound);
 	}
 
 	// The first line should always be the name of the map.
-	parseMapName(lines.get(NAMELINE));
+	parseMapName(nameLine);
 
 	// The second line should be the goal.
-	parseMapGoal(lines.get(GOALLINE));
+	parseMapGoal(goalLine);
 
 	// Read in the map data from the file
-	readMap(lines);
+	readMap(file);
     }
 
     /**
      * @return The width of the map
      */
     public int getMapWidth() {
-	return this.map[0].length;
+	return this.width;
     }
 
     /**
      * @return The height of the map
      */
     public int getMapHeight() {
-	return this.map.length;
+	return this.height;
     }
 
     /**
@@ -84,7 +152,33 @@ public class Map {
      * @return the contents of the cell
      */
     public Tile getMapCell(Location location) {
-	return this.map[location.getRow()][location.getCol()];
+	return getMapCell(location.getCol(), location.getRow());
+    }
+
+    /**
+     * Returns the contents of the cell of the map at a column and row
+     * 
+     * @param col the column of the cell
+     * @param row the row of the cell
+     * @return the contents of the cell
+     */
+    public Tile getMapCell(int col, int row) {
+	return TILES[this.map[(row * this.width) + col]];
+    }
+
+    /**
+     * Removes the item from a cell, e.g. after a successful pickup.
+     * 
+     * @param location the location of the cell
+     */
+    public void removeItem(Location location) {
+	final int index = (location.getRow() * this.width) + location.getCol();
+	if (((this.map[index] >> ITEM_SHIFT) & ITEM_MASK) == 0) {
+	    // There is no item to pick up
+	    throw new IllegalStateException("there is no item to pick up");
+	}
+	// Only floor tiles hold items so the floor is left behind
+	setTile(index, FLOOR_CODE);
     }
     
     /**
@@ -99,7 +193,7 @@ public class Map {
     	Tile tile = getMapCell(location);
     	if ((tile.hasItem() == false) && (tile.isExit() == false))
     	{
-    		this.map[location.getRow()][location.getCol()] = new Tile(GameItem.fromChar('G'));
+    		setTile((location.getRow() * this.width) + location.getCol(), GOLD_CODE);
     	}
     }
 
@@ -117,9 +211,20 @@ public class Map {
      * @return true if the location is valid, false otherwise
      */
     public boolean insideMap(Location location) {
-	if ((location.getCol() < 0) || (location.getCol() >= getMapWidth())
-		|| (location.getRow() < 0)
-		|| (location.getRow() >= getMapHeight())) {
+	return insideMap(location.getCol(), location.getRow());
+    }
+
+    /**
+     * Used to check if a column and row are a valid location in the map
+     * 
+     * @param col the column
+     * @param row the row
+     * @return true if the location is valid, false otherwise
+     */
+    public boolean insideMap(int col, int row) {
+	if ((col < 0) || (col >= getMapWidth())
+		|| (row < 0)
+		|| (row >= getMapHeight())) {
 	    return false;
 	}
 	return true;
@@ -136,87 +241,396 @@ public class Map {
      * @return the amount of gold that has not been picked up on the map
      */
     public int remainingGold() {
-	int goldCount = 0;
-
-	for (final Tile[] tileRow : this.map) {
-	    for (final Tile tile : tileRow) {
-		if (tile.hasItem()) {
-		    if (tile.getItem().getClass() == Gold.class) {
-			goldCount++;
-		    }
-		}
+	return this.goldOnMap;
+    }
+
+    /**
+     * Changes a tile once the map has been loaded, keeping the gold count up
+     * to date.
+     * 
+     * @param index
+     *            the index of the tile
+     * @param code
+     *            the new code of the tile
+     */
+    private void setTile(int index, byte code) {
+	if (isGold(this.map[index])) {
+	    this.goldOnMap--;
+	}
+	if (isGold(code)) {
+	    this.goldOnMap++;
+	}
+	this.map[index] = code;
+    }
+
+    /**
+     * @param code
+     *            the code of a tile
+     * @return true if the tile holds gold
+     */
+    private static boolean isGold(byte code) {
+	return (code & (ITEM_MASK << ITEM_SHIFT)) == GOLD_CODE;
+    }
+
+    /**
+     * Counts the gold on the map once it has been loaded
+     */
+    private void countGold() {
+	this.goldOnMap = 0;
+	for (int index = 0; index < this.map.length; index++) {
+	    if (isGold(this.map[index])) {
+		this.goldOnMap++;
 	    }
 	}
-	return goldCount;
     }
 
     /**
-     * Reads in a file and returns a List of Strings. This makes life slightly
-     * easier.
+     * Saves the map in the binary map format
      * 
      * @param filename
-     *            The name of the file to read the map from
-     * @return A List of lines in the file
-     * @throws FileNotFoundException
+     *            The name of the file to save to
+     * @throws IOException
      */
-    private List<String> readFile(String filename) throws FileNotFoundException {
-	Scanner scanner = null;
+    public void saveBinary(String filename) throws IOException {
+	final byte[] nameBytes = this.name.getBytes(StandardCharsets.UTF_8);
+	if (nameBytes.length > 0xFFFF) {
+	    throw new IOException("the map name is too long");
+	}
 
-	final List<String> lines = new ArrayList<String>();
+	final DataOutputStream output = new DataOutputStream(
+		new BufferedOutputStream(new FileOutputStream(filename)));
+	try {
+	    output.write(BINARY_MAGIC);
+	    output.writeByte(BINARY_VERSION);
+	    output.writeShort(nameBytes.length);
+	    output.write(nameBytes);
+	    output.writeInt(this.goal);
+	    output.writeInt(this.width);
+	    output.writeInt(this.height);
+	    output.writeInt(remainingGold());
+	    output.write(this.map);
+	} finally {
+	    output.close();
+	}
+    }
+
+    /**
+     * @param file
+     *            The file, positioned at its start
+     * @return true if the file starts with the binary map magic number
+     */
+    private static boolean hasBinaryMagic(ByteBuffer file) {
+	if (file.remaining() < BINARY_MAGIC.length) {
+	    return false;
+	}
+	for (int index = 0; index < BINARY_MAGIC.length; index++) {
+	    if (file.get(file.position() + index) != BINARY_MAGIC[index]) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /**
+     * Reads a map saved in the binary map format. Errors are reported with
+     * the byte offset they were found at.
+     * 
+     * @param file
+     *            The file, positioned at its start
+     * @throws ParseException
+     */
+    private void readBinaryMap(ByteBuffer file) throws ParseException {
 	try {
-	    // Use a scanner to read all the lines
-	    scanner = new Scanner(new FileReader(filename));
+	    file.position(file.position() + BINARY_MAGIC.length);
 
-	    // Store all the lines in the file
-	    while (scanner.hasNextLine()) {
-		lines.add(scanner.nextLine());
+	    final byte version = file.get();
+	    if (version != BINARY_VERSION) {
+		throw new ParseException("unsupported binary map version "
+			+ version, file.position() - 1);
 	    }
+
+	    final byte[] nameBytes = new byte[file.getShort() & 0xFFFF];
+	    file.get(nameBytes);
+	    this.name = new String(nameBytes, StandardCharsets.UTF_8);
+
+	    this.goal = file.getInt();
+	    final int mapWidth = file.getInt();
+	    final int mapHeight = file.getInt();
+	    final int goldCount = file.getInt();
+	    if ((mapWidth < 0) || (mapHeight < 0)
+		    || ((long) mapWidth * mapHeight != file.remaining())) {
+		throw new ParseException(
+			"map size does not match the number of tiles",
+			file.position());
+	    }
+
+	    final byte[] tiles = new byte[mapWidth * mapHeight];
+	    final int tilesStart = file.position();
+	    file.get(tiles);
+
+	    // Every code is checked as the file may not have been written by us
+	    for (int index = 0; index < tiles.length; index++) {
+		if (TILES[tiles[index] & 0xFF] == null) {
+		    throw new ParseException("Invalid tile code " + tiles[index],
+			    tilesStart + index);
+		}
+	    }
+
+	    this.width = mapWidth;
+	    this.height = mapHeight;
+	    this.map = tiles;
+	    countGold();
+	    if (remainingGold() != goldCount) {
+		throw new ParseException(
+			"gold count does not match the map", tilesStart);
+	    }
+	} catch (final BufferUnderflowException e) {
+	    throw new ParseException("binary map file is too short",
+		    file.position());
+	}
+    }
+
+    /**
+     * Memory maps a file so it can be read without copying it onto the heap
+     * 
+     * @param filename
+     *            The name of the file to read the map from
+     * @return A buffer holding the contents of the file
+     * @throws FileNotFoundException
+     */
+    private static ByteBuffer mapFile(String filename) throws FileNotFoundException {
+	final FileInputStream input = new FileInputStream(filename);
+	try {
+	    final FileChannel channel = input.getChannel();
+	    // The mapping stays valid once the file has been closed
+	    return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+	} catch (final IOException e) {
+	    throw new FileNotFoundException(filename + " could not be read: "
+		    + e.getMessage());
 	} finally {
-	    if (scanner != null) {
-		scanner.close();
+	    try {
+		input.close();
+	    } catch (final IOException e) {
+		// Nothing more can be done
 	    }
 	}
+    }
+
+    /**
+     * Reads the next line of the file, lines may end with \n, \r\n or \r
+     * 
+     * @param file
+     *            The file, positioned at the start of the line
+     * @return The line without its ending, null if the end of the file has
+     *         been reached
+     */
+    private static String readLine(ByteBuffer file) {
+	if (!file.hasRemaining()) {
+	    return null;
+	}
+	final int lineStart = file.position();
+	final int lineEnd = findLineEnd(file, lineStart);
+	final byte[] lineBytes = new byte[lineEnd - lineStart];
+	file.get(lineBytes);
+	skipLineEnding(file);
+	// Text is read using the platform default, as the FileReader did
+	return new String(lineBytes, Charset.defaultCharset());
+    }
 
-	return lines;
+    /**
+     * @param file
+     *            The file
+     * @param lineStart
+     *            The position the line starts at
+     * @return The position of the end of the line, not including its ending
+     */
+    private static int findLineEnd(ByteBuffer file, int lineStart) {
+	int lineEnd = lineStart;
+	while ((lineEnd < file.limit()) && (file.get(lineEnd) != '\n')
+		&& (file.get(lineEnd) != '\r')) {
+	    lineEnd++;
+	}
+	return lineEnd;
     }
 
     /**
-     * Reads in the map data from the file, storing the tiles to this.map
+     * Moves past the ending of a line
      * 
-     * @param lines
-     *            All the lines of text from the map file
+     * @param file
+     *            The file, positioned at the end of the line
+     */
+    private static void skipLineEnding(ByteBuffer file) {
+	if (file.hasRemaining() && (file.get() == '\r') && file.hasRemaining()
+		&& (file.get(file.position()) == '\n')) {
+	    file.get();
+	}
+    }
+
+    /**
+     * Reads in the map data from the file, storing the tiles to this.map.
+     * Every tile is a single byte character so the rows are read byte by
+     * byte, a row with any other character is read again as text so errors
+     * are reported by character rather than by byte.
+     * 
+     * @param file
+     *            The file, positioned at the start of the first row of the map
      * @throws ParseException
      * @throws IllegalStateException
      */
-    private void readMap(List<String> lines) throws ParseException,
+    private void readMap(ByteBuffer file) throws ParseException,
 	    IllegalStateException {
-	// Read the rest of the map
-	final int mapWidth = lines.get(MAPBEGINLINE).length();
-	final int mapHeight = lines.size() - MAPBEGINLINE;
+	final int mapStart = file.position();
 
-	this.map = new Tile[mapHeight][mapWidth];
+	// The first row sets the width of the map
+	final int mapWidth = findLineEnd(file, file.position()) - file.position();
 
-	for (int row = 0; row < mapHeight; row++) {
-	    final int lineNum = row + MAPBEGINLINE;
-	    final String line = lines.get(lineNum);
+	// Every row but the last takes at least one more byte than the width
+	// so this is the most rows there can be
+	final int maxRows = (file.remaining() + 1) / (mapWidth + 1);
+	final byte[] tiles = new byte[maxRows * mapWidth];
 
-	    if (line.length() != mapWidth) {
+	int row = 0;
+	while (file.hasRemaining()) {
+	    final int lineNum = row + MAPBEGINLINE;
+	    final int lineStart = file.position();
+
+	    final int lineEnd = findLineEnd(file, lineStart);
+	    if (hasMultibyteCharacter(file, lineEnd)) {
+		// The width and columns counted so far are in bytes not characters
+		file.position(mapStart);
+		readTextMap(file);
+		return;
+	    }
+	    if (lineEnd - lineStart != mapWidth) {
 		throw new ParseException("all lines must be the same length",
 			lineNum);
 	    }
 
-	    for (int col = 0; col < line.length(); col++) {
+	    for (int col = 0; col < mapWidth; col++) {
 		// Just use the character representation in the input file.
 
 		try {
-		    this.map[row][col] = Tile.fromChar(line.charAt(col));
+		    tiles[(row * mapWidth) + col] = codeFromChar((char) (file
+			    .get() & 0xFF));
 		} catch (final IllegalArgumentException e) {
 		    throw new ParseException("Invalid character (col:" + col
 			    + ")", lineNum);
 		}
 	    }
+	    skipLineEnding(file);
+	    row++;
 	}
 
+	this.width = mapWidth;
+	this.height = row;
+	// Lines ending with \r\n leave space for rows that aren't there
+	this.map = (tiles.length == row * mapWidth) ? tiles : Arrays.copyOf(
+		tiles, row * mapWidth);
+	countGold();
+    }
+
+    /**
+     * Checks a row for a character that takes more than one byte
+     * 
+     * @param file
+     *            The file, positioned at the start of the row
+     * @param lineEnd
+     *            The position of the end of the row
+     * @return true if there is a byte that isn't a single byte character
+     */
+    private static boolean hasMultibyteCharacter(ByteBuffer file, int lineEnd) {
+	for (int index = file.position(); index < lineEnd; index++) {
+	    if (file.get(index) < 0) {
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    /**
+     * Reads in the map data one line of text at a time, used for a map with
+     * characters that take more than one byte so errors give the column of
+     * the character as they always have
+     * 
+     * @param file
+     *            The file, positioned at the start of the first row of the map
+     * @throws ParseException
+     */
+    private void readTextMap(ByteBuffer file) throws ParseException {
+	final List<String> lines = new ArrayList<String>();
+	String line;
+	while ((line = readLine(file)) != null) {
+	    lines.add(line);
+	}
+
+	final int mapWidth = lines.get(0).length();
+	final byte[] tiles = new byte[lines.size() * mapWidth];
+	for (int row = 0; row < lines.size(); row++) {
+	    final int lineNum = row + MAPBEGINLINE;
+	    line = lines.get(row);
+
+	    if (line.length() != mapWidth) {
+		throw new ParseException("all lines must be the same length",
+			lineNum);
+	    }
+
+	    for (int col = 0; col < mapWidth; col++) {
+		try {
+		    tiles[(row * mapWidth) + col] = codeFromChar(line
+			    .charAt(col));
+		} catch (final IllegalArgumentException e) {
+		    throw new ParseException("Invalid character (col:" + col
+			    + ")", lineNum);
+		}
+	    }
+	}
+
+	this.width = mapWidth;
+	this.height = lines.size();
+	this.map = tiles;
+	countGold();
+    }
+
+    /**
+     * Converts a character of a map file into the code of its tile
+     * 
+     * @param character
+     *            the character from the map file
+     * @return the code of the tile
+     * @throws IllegalArgumentException
+     *             if the character isn't a tile
+     */
+    static byte codeFromChar(char character) {
+	for (int typeCode = 0; typeCode < TYPES.length; typeCode++) {
+	    if (character == TYPES[typeCode].toChar()) {
+		return (byte) typeCode;
+	    }
+	}
+
+	// If we get here, it must be a floor tile with an item
+	for (int itemCode = 1; itemCode < ITEMS.length; itemCode++) {
+	    if (character == ITEMS[itemCode].toChar()) {
+		return (byte) (itemCode << ITEM_SHIFT);
+	    }
+	}
+	throw new IllegalArgumentException("Invalid tile type" + character);
+    }
+
+    /**
+     * Creates the shared tile for every valid code
+     * 
+     * @return the tiles indexed by their code
+     */
+    private static Tile[] createTiles() {
+	final Tile[] tiles = new Tile[1 << 8];
+	for (int typeCode = 0; typeCode < TYPES.length; typeCode++) {
+	    tiles[typeCode] = new Tile(TYPES[typeCode]);
+	}
+	// Only floor tiles can hold items
+	for (int itemCode = 1; itemCode < ITEMS.length; itemCode++) {
+	    tiles[itemCode << ITEM_SHIFT] = new Tile(ITEMS[itemCode]);
+	}
+	return tiles;
     }
 
     /**
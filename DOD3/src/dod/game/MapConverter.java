@@ -0,0 +1,46 @@
+package dod.game;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.text.ParseException;
+
+/**
+ * A command line tool that converts map files into the binary map format.
+ * Any map that can be loaded, text or binary, can be converted.
+ * @author Benjamin Dring
+ */
+public class MapConverter {
+
+	/**
+	 * Converts a single map file
+	 * @param args String[] the map file to be read followed by the binary map file to be written
+	 */
+	public static void main(String[] args)
+	{
+		if (args.length != 2)
+		{
+			System.out.println("Usage: java dod.game.MapConverter <map file> <binary map file>");
+			return;
+		}
+		try
+		{
+			Map map = new Map(args[0]);
+			map.saveBinary(args[1]);
+			System.out.println("Converted " + map.getName() + " (" + map.getMapWidth() + "x"
+					+ map.getMapHeight() + ") to " + args[1]);
+		}
+		catch (FileNotFoundException e)
+		{
+			System.out.println("Map file " + args[0] + " could not be found");
+		}
+		catch (ParseException e)
+		{
+			System.out.println("Map file " + args[0] + " is not valid: " + e.getMessage()
+					+ " (at " + e.getErrorOffset() + ")");
+		}
+		catch (IOException e)
+		{
+			System.out.println("Binary map file " + args[1] + " could not be written: " + e.getMessage());
+		}
+	}
+}
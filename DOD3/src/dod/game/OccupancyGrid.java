@@ -0,0 +1,135 @@
+package dod.game;
+
+import java.util.SplittableRandom;
+
+/**
+ * Records which living player stands on each tile of the map so that it can be found without searching every player.
+ * The grid is a single array in row-major order holding userID + 1 for each tile, 0 meaning the tile is empty.
+ * It is owned by the GameLogic and must be kept up to date whenever a player is placed, moves or dies.
+ * The walkable tiles without a player are also kept as a set so a free tile can be picked for a new player straight away.
+ * @author Benjamin Dring
+ */
+class OccupancyGrid {
+	private static final int EMPTY = 0;
+
+	private final int width;
+	private final int height;
+	private final int[] cells; //userID + 1 of the player on each tile
+	private final IndexedCellSet freeCells; //The walkable tiles with no player on
+
+	/**
+	 * Creates an empty grid for a map, every walkable tile starts free
+	 * @param map Map the map the players are on
+	 */
+	public OccupancyGrid(Map map)
+	{
+		this.width = map.getMapWidth();
+		this.height = map.getMapHeight();
+		this.cells = new int[width * height];
+		this.freeCells = new IndexedCellSet(width * height);
+		for (int row = 0; row < height; row++)
+		{
+			for (int col = 0; col < width; col++)
+			{
+				if (map.getMapCell(col, row).isWalkable())
+				{
+					freeCells.add((row * width) + col);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the player on a tile
+	 * @param col int the column of the tile
+	 * @param row int the row of the tile
+	 * @return int the userID of the player on the tile, -1 if there is no player or the tile is outside the map
+	 */
+	public int getUserID(int col, int row)
+	{
+		if ((col < 0) || (row < 0) || (col >= width) || (row >= height))
+		{
+			return -1;
+		}
+		return cells[(row * width) + col] - 1;
+	}
+
+	/**
+	 * Gets the player on a tile
+	 * @param location Location the tile
+	 * @return int the userID of the player on the tile, -1 if there is no player or the tile is outside the map
+	 */
+	public int getUserID(Location location)
+	{
+		return getUserID(location.getCol(), location.getRow());
+	}
+
+	/**
+	 * @param location Location the tile
+	 * @return boolean true if a player is on the tile
+	 */
+	public boolean isOccupied(Location location)
+	{
+		return (getUserID(location) != -1);
+	}
+
+	/**
+	 * Places a player on a tile
+	 * @param userID int the player being placed
+	 * @param location Location the tile, it must be inside the map
+	 */
+	public void place(int userID, Location location)
+	{
+		final int index = (location.getRow() * width) + location.getCol();
+		cells[index] = userID + 1;
+		freeCells.remove(index);
+	}
+
+	/**
+	 * Removes a player from a tile, nothing is changed if a different player is on it
+	 * @param userID int the player being removed
+	 * @param location Location the tile the player was on
+	 */
+	public void remove(int userID, Location location)
+	{
+		if (getUserID(location) == userID)
+		{
+			final int index = (location.getRow() * width) + location.getCol();
+			cells[index] = EMPTY;
+			//Players only stand on walkable tiles so the tile is free again
+			freeCells.add(index);
+		}
+	}
+
+	/**
+	 * @return boolean true if there is a walkable tile with no player on
+	 */
+	public boolean hasFreeTile()
+	{
+		return (freeCells.size() > 0);
+	}
+
+	/**
+	 * Picks a walkable tile with no player on, every such tile is equally likely
+	 * @param random SplittableRandom the source of the choice
+	 * @return Location the tile
+	 * @throws IllegalStateException if there are no free tiles
+	 */
+	public Location randomFreeLocation(SplittableRandom random)
+	{
+		final int index = freeCells.sample(random);
+		return new Location(index % width, index / width);
+	}
+
+	/**
+	 * Moves a player between two tiles
+	 * @param userID int the player being moved
+	 * @param from Location the tile the player is leaving
+	 * @param to Location the tile the player is moving to
+	 */
+	public void move(int userID, Location from, Location to)
+	{
+		remove(userID, from);
+		place(userID, to);
+	}
+}
@@ -20,7 +20,33 @@ public class Player implements GameItemConsumer {
     boolean defaultName = true;
 
     // The player may be "listened to" to interpret updates
-    private final PlayerListener listener;
+    private PlayerListener listener;
+
+    // Listens to a player whose user has left the game, nothing is passed on
+    private static final PlayerListener DETACHED_LISTENER = new PlayerListener(){
+	@Override
+	public void sendMessage(String message) {}
+	@Override
+	public void sendBroadcast(Broadcast broadcast) {}
+	@Override
+	public void startTurn() {}
+	@Override
+	public void endTurn() {}
+	@Override
+	public void win() {}
+	@Override
+	public void hpChange(int value) {}
+	@Override
+	public void treasureChange(int value) {}
+	@Override
+	public void damage(int hpLoss) {}
+	@Override
+	public void look() {}
+	@Override
+	public void gameOver() {}
+	@Override
+	public void gameRestarted() {}
+    };
 
     // Location on the map
     private Location location;
@@ -208,8 +234,8 @@ public class Player implements GameItemConsumer {
 	int lookDistance = defaultLookDistance;
 
 	// Some items, e.g. the lantern, may increase the look distance
-	for (final GameItem item : this.items) {
-	    lookDistance += item.lookDistanceIncrease();
+	for (int index = 0; index < this.items.size(); index++) {
+	    lookDistance += this.items.get(index).lookDistanceIncrease();
 	}
 
 	return lookDistance;
@@ -224,9 +250,23 @@ public class Player implements GameItemConsumer {
      * @return true if the player can see the tile with the specified offset.
      */
     public boolean canSeeTile(int rowOffset, int colOffset) {
+	return canSeeTile(rowOffset, colOffset, lookDistance());
+    }
+
+    /**
+     * Returns true if a player can see a tile, using a look distance that has
+     * already been worked out so it isn't recalculated for every tile
+     * 
+     * @param rowOffset
+     * @param colOffset
+     * @param lookDistance
+     *            the result of lookDistance()
+     * @return true if the player can see the tile with the specified offset.
+     */
+    public boolean canSeeTile(int rowOffset, int colOffset, int lookDistance) {
 	// This is based on the Manhattan distance
 
-	final boolean canSeeTile = (Math.abs(rowOffset) + Math.abs(colOffset) <= lookDistance() + 1);
+	final boolean canSeeTile = (Math.abs(rowOffset) + Math.abs(colOffset) <= lookDistance + 1);
 	return canSeeTile;
     }
 
@@ -239,8 +279,20 @@ public class Player implements GameItemConsumer {
      * @return true if the player has the item, false otherwise
      */
     public boolean hasItem(GameItem item) {
-	for (final GameItem itemToCompare : this.items) {
-	    if (item.getClass() == itemToCompare.getClass()) {
+	return hasItem(item.getClass());
+    }
+
+    /**
+     * Check if the player has an item of a given type, without needing an
+     * instance of the item to compare with
+     * 
+     * @param itemType
+     *            The class of the item
+     * @return true if the player has the item, false otherwise
+     */
+    public boolean hasItem(Class<? extends GameItem> itemType) {
+	for (int index = 0; index < this.items.size(); index++) {
+	    if (itemType == this.items.get(index).getClass()) {
 		return true;
 	    }
 	}
@@ -277,6 +329,16 @@ public class Player implements GameItemConsumer {
 	this.listener.sendMessage(message);
     }
 
+    /**
+     * Send a message that every player is being sent to the listener
+     * 
+     * @param broadcast
+     *            the message to send to the listener
+     */
+    public void sendBroadcast(Broadcast broadcast) {
+	this.listener.sendBroadcast(broadcast);
+    }
+
     /**
      * Handle the start of a player's turn
      */
@@ -300,6 +362,27 @@ public class Player implements GameItemConsumer {
 	this.listener.win();
     }
 
+    /**
+     * Handle the end of the game
+     */
+    public void gameOver() {
+	this.listener.gameOver();
+    }
+
+    /**
+     * Handle the game being restarted without this player
+     */
+    public void gameRestarted() {
+	this.listener.gameRestarted();
+    }
+
+    /**
+     * Stops passing updates to the listener, used when the user has left the game
+     */
+    public void detachListener() {
+	this.listener = DETACHED_LISTENER;
+    }
+
     /**
      * Reset the player's AP to the initial value.
      */
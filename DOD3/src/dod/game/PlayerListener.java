@@ -17,6 +17,15 @@ public interface PlayerListener {
      */
     public void sendMessage(String message);
 
+    /**
+     * Sends a message that every player is being sent.
+     * The broadcast is shared between the listeners, so it can be encoded once for all of them.
+     * 
+     * @param broadcast
+     *            the message to be sent
+     */
+    public void sendBroadcast(Broadcast broadcast);
+
     /**
      * Informs the listener of the beginning of a player's turn
      */
@@ -62,4 +71,15 @@ public interface PlayerListener {
      */
     public void look();
     
+    /**
+     * Informs the listener that the game has ended, whoever won
+     */
+    public void gameOver();
+    
+    /**
+     * Informs the listener that everyone died and the game has been set up again,
+     * the player is not part of the new game
+     */
+    public void gameRestarted();
+    
 }
@@ -4,6 +4,9 @@ import dod.game.items.GameItem;
 
 /**
  * An class to represent the tiles on the Map.
+ * 
+ * Tiles can't be changed, the map shares a single tile between every cell
+ * with the same contents and replaces it when the contents change.
  */
 public class Tile {
 
@@ -35,7 +38,7 @@ public class Tile {
     private final TileType type;
 
     // A tile may contain an item
-    private GameItem item = null;
+    private final GameItem item;
 
     /**
      * Creates a tile without an item
@@ -45,6 +48,7 @@ public class Tile {
      */
     public Tile(TileType type) {
 	this.type = type;
+	this.item = null;
     }
 
     /**
@@ -55,8 +59,7 @@ public class Tile {
      */
     public Tile(GameItem item) {
 	// Only a floor tile can have an item
-	this(TileType.FLOOR);
-
+	this.type = TileType.FLOOR;
 	this.item = item;
     }
 
@@ -108,18 +111,6 @@ public class Tile {
 	return this.item;
     }
 
-    /**
-     * Removes the item from the tile, e.g. after a successful pickup.
-     */
-    public void removeItem() {
-	if (this.item == null) {
-	    // There is no item to pick up
-	    throw new IllegalStateException("there is no item to pick up");
-	} else {
-	    this.item = null;
-	}
-    }
-
     /**
      * Turn a character into a map tile
      * 